@@ -0,0 +1,81 @@
+package com.example.apptimetracker;
+
+import android.content.Context;
+import android.graphics.PixelFormat;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.Button;
+import android.widget.TextView;
+
+/**
+ * The limit alert drawn over other apps. The view and its window parameters are created once,
+ * when the service starts, and rebound for every alert, so showing one is a few text updates
+ * plus a single {@code addView} if it is not already on screen.
+ * Must be used from the main thread.
+ */
+public class AlertOverlay {
+
+    public interface OnDismissListener {
+        void onDismiss(String packageName);
+    }
+
+    private final WindowManager windowManager;
+    private final View view;
+    private final TextView appNameView;
+    private final TextView usageView;
+    private final TextView thresholdView;
+    private final WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+            WindowManager.LayoutParams.MATCH_PARENT,
+            WindowManager.LayoutParams.WRAP_CONTENT,
+            WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
+            WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
+            PixelFormat.TRANSLUCENT
+    );
+    private final TrackingMetrics metrics = TrackingMetrics.getInstance();
+    private String packageName;
+
+    public AlertOverlay(Context context, OnDismissListener dismissListener) {
+        windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        view = LayoutInflater.from(context).inflate(R.layout.alert_view, null);
+        appNameView = view.findViewById(R.id.text_view_app_name);
+        usageView = view.findViewById(R.id.text_view_usage);
+        thresholdView = view.findViewById(R.id.text_view_threshold);
+        Button dismissButton = view.findViewById(R.id.button_dismiss);
+        dismissButton.setOnClickListener(v -> {
+            String dismissedPackage = packageName;
+            hide();
+            if (dismissedPackage != null) {
+                dismissListener.onDismiss(dismissedPackage);
+            }
+        });
+    }
+
+    /**
+     * Shows the alert for the app, replacing whatever the overlay showed before.
+     */
+    public void show(String packageName, String appName, String formattedUsage, String formattedLimit) {
+        long start = System.nanoTime();
+        this.packageName = packageName;
+        appNameView.setText("Time Limit Reached for " + appName);
+        usageView.setText("Usage: " + formattedUsage);
+        thresholdView.setText("Limit: " + formattedLimit);
+        if (!view.isAttachedToWindow()) {
+            metrics.countBinderCall();
+            windowManager.addView(view, params);
+        }
+        metrics.record(TrackingMetrics.Stage.OVERLAY, System.nanoTime() - start);
+    }
+
+    public void hide() {
+        packageName = null;
+        if (view.isAttachedToWindow()) {
+            try {
+                metrics.countBinderCall();
+                windowManager.removeView(view);
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
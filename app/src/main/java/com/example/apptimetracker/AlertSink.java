@@ -0,0 +1,6 @@
+package com.example.apptimetracker;
+
+// Receives the engine's decision that an app is over its limit; the overlay on a device
+public interface AlertSink {
+    void showAlert(String packageName, long usageMillis, long limitMillis);
+}
@@ -0,0 +1,113 @@
+package com.example.apptimetracker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Where each app's limit alert stands today. An app over its limit is alerted once and is then
+ * {@link State#NOTIFIED} while the overlay shows it. Once the user dismisses it, the app is
+ * {@link State#DISMISSED} and stays quiet until its snooze ends, after which it may be alerted
+ * again. Only one app can be notified at a time, since there is only one overlay.
+ * Not thread safe; used from the engine's thread only.
+ */
+public class AlertStates {
+
+    public enum State { NOTIFIED, DISMISSED }
+
+    /** Returned by {@link #quietUntil} while the alert is on screen. */
+    static final long UNTIL_DISMISSED = Long.MAX_VALUE;
+
+    private static class Entry {
+        State state;
+        long snoozedUntil;
+    }
+
+    private final long snoozeMillis;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private String notifiedPackage;
+
+    /**
+     * @param snoozeMillis How long a dismissed app stays quiet.
+     */
+    public AlertStates(long snoozeMillis) {
+        this.snoozeMillis = snoozeMillis;
+    }
+
+    /**
+     * @return A time in the past if the app may be alerted now, when its snooze ends if it is
+     *         dismissed, or {@link #UNTIL_DISMISSED} while its alert is on screen.
+     */
+    public long quietUntil(String packageName) {
+        Entry entry = entries.get(packageName);
+        if (entry == null) return Long.MIN_VALUE;
+        return (entry.state == State.NOTIFIED) ? UNTIL_DISMISSED : entry.snoozedUntil;
+    }
+
+    /**
+     * Records that the overlay now shows the app. An app it showed before is dismissed by this.
+     */
+    public void onNotified(String packageName, long now) {
+        if (notifiedPackage != null && !notifiedPackage.equals(packageName)) {
+            onDismissed(notifiedPackage, now);
+        }
+        Entry entry = entries.get(packageName);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(packageName, entry);
+        }
+        entry.state = State.NOTIFIED;
+        notifiedPackage = packageName;
+    }
+
+    public void onDismissed(String packageName, long now) {
+        Entry entry = entries.get(packageName);
+        if (entry == null || entry.state != State.NOTIFIED) return;
+        entry.state = State.DISMISSED;
+        entry.snoozedUntil = now + snoozeMillis;
+        if (packageName.equals(notifiedPackage)) {
+            notifiedPackage = null;
+        }
+    }
+
+    /**
+     * @return The app's state, or null if it has not been alerted today.
+     */
+    public State getState(String packageName) {
+        Entry entry = entries.get(packageName);
+        return (entry != null) ? entry.state : null;
+    }
+
+    /**
+     * @return For every app alerted today, when it may be alerted again: the end of its snooze,
+     *         or {@link #UNTIL_DISMISSED} while its alert is on screen.
+     */
+    public Map<String, Long> getQuietTimes() {
+        HashMap<String, Long> quietTimes = new HashMap<>();
+        for (String packageName : entries.keySet()) {
+            quietTimes.put(packageName, quietUntil(packageName));
+        }
+        return quietTimes;
+    }
+
+    /**
+     * Replaces all states with ones saved by {@link #getQuietTimes()}. The overlay does not
+     * outlive the process that showed it, so an alert that was on screen counts as dismissed now.
+     */
+    public void restore(Map<String, Long> quietTimes, long now) {
+        clear();
+        for (Map.Entry<String, Long> saved : quietTimes.entrySet()) {
+            Entry entry = new Entry();
+            entry.state = State.DISMISSED;
+            entry.snoozedUntil = (saved.getValue() == UNTIL_DISMISSED) ? now + snoozeMillis : saved.getValue();
+            entries.put(saved.getKey(), entry);
+        }
+    }
+
+    /**
+     * Forgets all states, e.g. when a new day starts.
+     */
+    public void clear() {
+        entries.clear();
+        notifiedPackage = null;
+    }
+}
@@ -1,26 +1,171 @@
 package com.example.apptimetracker;
 
 import android.content.Context;
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
 
-@Database(entities = {AppLimit.class}, version = 1, exportSchema = false)
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Database(entities = {AppLimit.class, HourlyUsage.class, PackageMetadata.class, DailyUsage.class, WeeklyUsage.class,
+        SnapshotUsage.class, SavedCheckpoint.class},
+        version = 6, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
     public abstract AppLimitDao appLimitDao();
+    public abstract UsageHistoryDao usageHistoryDao();
+    public abstract PackageMetadataDao packageMetadataDao();
+    public abstract SnapshotDao snapshotDao();
+
+    // Readers run in parallel with the writer in WAL mode, so give them their own small pool
+    private static final int QUERY_THREADS = 4;
 
     private static volatile AppDatabase INSTANCE;
 
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `hourly_usage` (`package_name` TEXT NOT NULL, "
+                    + "`hour_start` INTEGER NOT NULL, `usage_millis` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`package_name`, `hour_start`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_hourly_usage_hour_start` "
+                    + "ON `hourly_usage` (`hour_start`)");
+        }
+    };
+
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `package_metadata` (`package_name` TEXT NOT NULL, "
+                    + "`label` TEXT NOT NULL, `is_launcher` INTEGER NOT NULL, `is_system` INTEGER NOT NULL, "
+                    + "`version_code` INTEGER NOT NULL, PRIMARY KEY(`package_name`))");
+        }
+    };
+
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `daily_usage` (`package_name` TEXT NOT NULL, "
+                    + "`day_start` INTEGER NOT NULL, `usage_millis` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`package_name`, `day_start`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_daily_usage_day_start` "
+                    + "ON `daily_usage` (`day_start`)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `weekly_usage` (`package_name` TEXT NOT NULL, "
+                    + "`week_start` INTEGER NOT NULL, `usage_millis` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`package_name`, `week_start`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_weekly_usage_week_start` "
+                    + "ON `weekly_usage` (`week_start`)");
+            // Roll up the hours recorded so far, using the same local day and Monday week as UsageBuckets
+            database.execSQL("INSERT INTO `daily_usage` (`package_name`, `day_start`, `usage_millis`) "
+                    + "SELECT `package_name`, strftime('%s', `hour_start` / 1000, 'unixepoch', 'localtime', "
+                    + "'start of day', 'utc') * 1000 AS `day`, SUM(`usage_millis`) "
+                    + "FROM `hourly_usage` GROUP BY `package_name`, `day`");
+            database.execSQL("INSERT INTO `weekly_usage` (`package_name`, `week_start`, `usage_millis`) "
+                    + "SELECT `package_name`, strftime('%s', `hour_start` / 1000, 'unixepoch', 'localtime', "
+                    + "'start of day', 'weekday 0', '-6 days', 'utc') * 1000 AS `week`, SUM(`usage_millis`) "
+                    + "FROM `hourly_usage` GROUP BY `package_name`, `week`");
+        }
+    };
+
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `snapshot_usage` (`snapshot_id` INTEGER NOT NULL, "
+                    + "`package_name` TEXT NOT NULL, `label` TEXT NOT NULL COLLATE LOCALIZED, "
+                    + "`usage_millis` INTEGER NOT NULL, PRIMARY KEY(`snapshot_id`, `package_name`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_snapshot_usage_snapshot_id_usage_millis_package_name` "
+                    + "ON `snapshot_usage` (`snapshot_id`, `usage_millis`, `package_name`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_snapshot_usage_snapshot_id_label_package_name` "
+                    + "ON `snapshot_usage` (`snapshot_id`, `label`, `package_name`)");
+        }
+    };
+
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `tracking_checkpoint` (`id` INTEGER NOT NULL, "
+                    + "`data` BLOB NOT NULL, PRIMARY KEY(`id`))");
+        }
+    };
+
     public static AppDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                                     AppDatabase.class, "app_limit_database")
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6)
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                            .setQueryExecutor(createQueryExecutor())
+                            .openHelperFactory(AppDatabase::createOpenHelper)
                             .build();
                 }
             }
         }
         return INSTANCE;
     }
-}
\ No newline at end of file
+
+    /**
+     * The default open helper, except that a new database is created with incremental auto-vacuum,
+     * so {@link UsageMaintenance} can give freed pages back a few at a time. An existing database
+     * can only be switched by a full VACUUM, which the pragma does not run; it stays as it is.
+     */
+    private static SupportSQLiteOpenHelper createOpenHelper(SupportSQLiteOpenHelper.Configuration configuration) {
+        SupportSQLiteOpenHelper.Callback callback = configuration.callback;
+        SupportSQLiteOpenHelper.Callback incrementalVacuum = new SupportSQLiteOpenHelper.Callback(callback.version) {
+            @Override
+            public void onConfigure(@NonNull SupportSQLiteDatabase db) {
+                callback.onConfigure(db);
+                // Runs before the tables are created, which is when the mode can still be picked
+                db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            }
+
+            @Override
+            public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                callback.onCreate(db);
+            }
+
+            @Override
+            public void onUpgrade(@NonNull SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                callback.onUpgrade(db, oldVersion, newVersion);
+            }
+
+            @Override
+            public void onDowngrade(@NonNull SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                callback.onDowngrade(db, oldVersion, newVersion);
+            }
+
+            @Override
+            public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                callback.onOpen(db);
+            }
+
+            @Override
+            public void onCorruption(@NonNull SupportSQLiteDatabase db) {
+                callback.onCorruption(db);
+            }
+        };
+        return new FrameworkSQLiteOpenHelperFactory().create(
+                SupportSQLiteOpenHelper.Configuration.builder(configuration.context)
+                        .name(configuration.name)
+                        .callback(incrementalVacuum)
+                        .noBackupDirectory(configuration.useNoBackupDirectory)
+                        .allowDataLossOnRecovery(configuration.allowDataLossOnRecovery)
+                        .build());
+    }
+
+    private static ExecutorService createQueryExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(QUERY_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "app-db-query-" + threadCount.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.apptimetracker;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.WeakHashMap;
+
+/**
+ * App icons scaled down to the size of the list row's icon view.
+ * Bitmaps are kept in a bounded in-memory LRU and as PNG thumbnails on disk, keyed by package
+ * and version, so a refresh does not decode full-size icons from the PackageManager again.
+ */
+public class AppIconCache {
+    private static final String TAG = "AppIconCache";
+    private static final String DISK_DIR = "app_icons";
+    // Not allowed in package names, so one app's prefix never matches another app
+    private static final String VERSION_SEPARATOR = "@";
+    // At most 1/32 of the heap, which is a few hundred 48dp icons on a typical device
+    private static final int MEMORY_FRACTION = 32;
+
+    private static volatile AppIconCache INSTANCE;
+
+    private final Context context;
+    private final int iconSize;
+    private final File diskDir;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final TaskScheduler.Group tasks = TaskScheduler.getInstance().newGroup();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // The task key of each view that has had a load; only used on the main thread
+    private final WeakHashMap<ImageView, String> loadKeys = new WeakHashMap<>();
+    private long nextLoadKey;
+
+    public static AppIconCache getInstance(final Context context) {
+        if (INSTANCE == null) {
+            synchronized (AppIconCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new AppIconCache(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private AppIconCache(Context context) {
+        this.context = context;
+        this.iconSize = context.getResources().getDimensionPixelSize(R.dimen.app_icon_size);
+        this.diskDir = new File(context.getCacheDir(), DISK_DIR);
+        int maxBytes = (int) (Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+        this.memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Shows the package's icon in the view, loading it in the background if it is not in memory.
+     * Loads are keyed by view, so a view rebound to another package replaces its load that is
+     * still waiting, and one that is already running has its result dropped. While scrolling,
+     * only the rows on screen wait for an icon, not every row that went past.
+     * Must be called on the main thread.
+     */
+    public void loadInto(String packageName, ImageView imageView) {
+        Bitmap cached = memoryCache.get(packageName);
+        if (cached != null) {
+            cancel(imageView);
+            imageView.setImageBitmap(cached);
+            return;
+        }
+        imageView.setTag(packageName);
+        imageView.setImageDrawable(null);
+        tasks.execute(TaskScheduler.Lane.UI, loadKey(imageView), () -> {
+            Bitmap bitmap = loadBitmap(packageName);
+            if (bitmap == null) return;
+            memoryCache.put(packageName, bitmap);
+            mainHandler.post(() -> {
+                if (packageName.equals(imageView.getTag())) {
+                    imageView.setImageBitmap(bitmap);
+                }
+            });
+        });
+    }
+
+    /**
+     * Drops the view's load if it is still waiting and ignores it if it is running, e.g. when
+     * its row is recycled or shows a placeholder. Must be called on the main thread.
+     */
+    public void cancel(ImageView imageView) {
+        imageView.setTag(null);
+        String key = loadKeys.get(imageView);
+        if (key != null) {
+            tasks.cancel(key);
+        }
+    }
+
+    private String loadKey(ImageView imageView) {
+        String key = loadKeys.get(imageView);
+        if (key == null) {
+            key = "icon:" + nextLoadKey++;
+            loadKeys.put(imageView, key);
+        }
+        return key;
+    }
+
+    /**
+     * Drops the in-memory icon of a package, e.g. after it was updated.
+     */
+    public void invalidate(String packageName) {
+        memoryCache.remove(packageName);
+    }
+
+    private Bitmap loadBitmap(String packageName) {
+        // The version comes from the package index, so a disk hit needs no PackageManager call
+        PackageMetadata metadata = PackageIndex.getInstance(context).getOrIndex(packageName);
+        if (metadata == null) return null;
+        File file = new File(diskDir, packageName + VERSION_SEPARATOR + metadata.versionCode + ".png");
+        if (file.exists()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+            if (bitmap != null) return bitmap;
+        }
+
+        Drawable drawable;
+        try {
+            drawable = context.getPackageManager().getApplicationIcon(packageName);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(iconSize, iconSize, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, iconSize, iconSize);
+        drawable.draw(canvas);
+        writeThumbnail(packageName, file, bitmap);
+        return bitmap;
+    }
+
+    private void writeThumbnail(String packageName, File file, Bitmap bitmap) {
+        if (!diskDir.exists() && !diskDir.mkdirs()) return;
+        // Thumbnails of older versions of the same app are no longer needed
+        File[] oldFiles = diskDir.listFiles((dir, name) -> name.startsWith(packageName + VERSION_SEPARATOR));
+        if (oldFiles != null) {
+            for (File oldFile : oldFiles) {
+                oldFile.delete();
+            }
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write icon thumbnail for " + packageName, e);
+            file.delete();
+        }
+    }
+}
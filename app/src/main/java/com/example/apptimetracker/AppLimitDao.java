@@ -1,15 +1,39 @@
 package com.example.apptimetracker;
 
+import android.database.Cursor;
+
 import androidx.room.Dao;
+import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 
+import java.util.List;
+
 @Dao
 public interface AppLimitDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertOrUpdate(AppLimit appLimit);
 
+    // Room runs list inserts and deletes in a single transaction
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<AppLimit> appLimits);
+
+    @Delete
+    void deleteAll(List<AppLimit> appLimits);
+
     @Query("SELECT * FROM app_limits WHERE package_name = :packageName")
     AppLimit getLimitForApp(String packageName);
-}
\ No newline at end of file
+
+    @Query("SELECT * FROM app_limits")
+    List<AppLimit> getAllLimits();
+
+    @Query("SELECT * FROM app_limits WHERE package_name IN (:packageNames)")
+    List<AppLimit> getLimitsFor(List<String> packageNames);
+
+    /**
+     * Streams all limits without loading them into memory. The caller must close the cursor.
+     */
+    @Query("SELECT * FROM app_limits ORDER BY package_name")
+    Cursor streamAllLimits();
+}
@@ -0,0 +1,256 @@
+package com.example.apptimetracker;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Finds the apps of one snapshot whose label or package name contains a query, for the
+ * dashboard's search box. Built once per snapshot; a lookup only touches the apps that share
+ * the query's trigrams, so every keystroke is answered on the main thread within a frame.
+ * Queries shorter than a trigram match the start of a word instead, e.g. "ma" finds "Google Maps"
+ * and "com.android.mail". Case and accents are ignored. Immutable and has no Android dependency.
+ */
+public final class AppSearchIndex {
+    private static final int GRAM = 3;
+    private static final int[] NONE = new int[0];
+
+    // In name order, so an app's position is its rank by name
+    private final AppUsageInfo[] apps;
+    private final String[] labels;
+    private final String[] packageNames;
+    private final int[] timeRanks;
+    private final HashMap<Long, int[]> trigrams = new HashMap<>();
+    // Every word of every app, sorted, for prefix lookups by binary search
+    private final String[] words;
+    private final int[] wordApps;
+
+    /**
+     * @param appsByName The snapshot's apps in the list's ascending name order.
+     */
+    public AppSearchIndex(List<AppUsageInfo> appsByName) {
+        int count = appsByName.size();
+        apps = appsByName.toArray(new AppUsageInfo[0]);
+        labels = new String[count];
+        packageNames = new String[count];
+
+        HashMap<Long, Posting> postings = new HashMap<>();
+        List<String[]> appWords = new ArrayList<>(count);
+        int wordCount = 0;
+        for (int i = 0; i < count; i++) {
+            labels[i] = normalize(apps[i].appName);
+            packageNames[i] = normalize(apps[i].packageName);
+            addTrigrams(postings, labels[i], i);
+            addTrigrams(postings, packageNames[i], i);
+            String[] split = splitWords(labels[i] + " " + packageNames[i]);
+            appWords.add(split);
+            wordCount += split.length;
+        }
+        for (HashMap.Entry<Long, Posting> entry : postings.entrySet()) {
+            trigrams.put(entry.getKey(), entry.getValue().toArray());
+        }
+
+        Integer[] wordOrder = new Integer[wordCount];
+        String[] allWords = new String[wordCount];
+        int[] allWordApps = new int[wordCount];
+        int w = 0;
+        for (int i = 0; i < count; i++) {
+            for (String word : appWords.get(i)) {
+                allWords[w] = word;
+                allWordApps[w] = i;
+                wordOrder[w] = w;
+                w++;
+            }
+        }
+        Arrays.sort(wordOrder, (a, b) -> allWords[a].compareTo(allWords[b]));
+        words = new String[wordCount];
+        wordApps = new int[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = allWords[wordOrder[i]];
+            wordApps[i] = allWordApps[wordOrder[i]];
+        }
+
+        // The same order as SnapshotDao's time pages: usage, then package name
+        Integer[] byTime = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            byTime[i] = i;
+        }
+        Arrays.sort(byTime, (a, b) -> {
+            int byUsage = Long.compare(apps[a].usageTimeMillis, apps[b].usageTimeMillis);
+            return (byUsage != 0) ? byUsage : apps[a].packageName.compareTo(apps[b].packageName);
+        });
+        timeRanks = new int[count];
+        for (int rank = 0; rank < count; rank++) {
+            timeRanks[byTime[rank]] = rank;
+        }
+    }
+
+    public int size() {
+        return apps.length;
+    }
+
+    /**
+     * @param query What the user typed.
+     * @param byTime Whether the matches are ordered by usage time or by name.
+     * @return The matching apps in the list's order; all of them for a blank query.
+     */
+    public List<AppUsageInfo> search(String query, boolean byTime, boolean ascending) {
+        String normalized = normalize(query).trim();
+        int[] matches;
+        if (normalized.isEmpty()) {
+            matches = all();
+        } else if (normalized.length() < GRAM) {
+            matches = matchWordPrefix(normalized);
+        } else {
+            matches = matchSubstring(normalized);
+        }
+
+        Integer[] ordered = new Integer[matches.length];
+        for (int i = 0; i < matches.length; i++) {
+            ordered[i] = matches[i];
+        }
+        if (byTime) {
+            Arrays.sort(ordered, (a, b) -> Integer.compare(timeRanks[a], timeRanks[b]));
+        } else {
+            Arrays.sort(ordered);
+        }
+        List<AppUsageInfo> result = new ArrayList<>(ordered.length);
+        for (int i = 0; i < ordered.length; i++) {
+            result.add(apps[ordered[ascending ? i : ordered.length - 1 - i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Lower case without accents, so "E", "e" and an accented "e" are all the same letter.
+     */
+    static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    private int[] all() {
+        int[] all = new int[apps.length];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        return all;
+    }
+
+    private int[] matchWordPrefix(String prefix) {
+        int low = 0;
+        int high = words.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (words[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        boolean[] matched = new boolean[apps.length];
+        int count = 0;
+        for (int i = low; i < words.length && words[i].startsWith(prefix); i++) {
+            if (!matched[wordApps[i]]) {
+                matched[wordApps[i]] = true;
+                count++;
+            }
+        }
+        int[] matches = new int[count];
+        int m = 0;
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i]) matches[m++] = i;
+        }
+        return matches;
+    }
+
+    private int[] matchSubstring(String query) {
+        // Every trigram of the query narrows the candidates down, walking the shorter list
+        int[] candidates = null;
+        for (int i = 0; i + GRAM <= query.length(); i++) {
+            int[] posting = trigrams.get(trigram(query, i));
+            if (posting == null) return NONE;
+            if (candidates == null || posting.length < candidates.length) {
+                candidates = (candidates == null) ? posting : intersect(posting, candidates);
+            } else {
+                candidates = intersect(candidates, posting);
+            }
+            if (candidates.length == 0) return NONE;
+        }
+        // The trigrams can come from the label and the package name together, so check the text
+        int[] matches = new int[candidates.length];
+        int count = 0;
+        for (int app : candidates) {
+            if (labels[app].contains(query) || packageNames[app].contains(query)) {
+                matches[count++] = app;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    // Both are sorted; the result is too
+    private static int[] intersect(int[] smaller, int[] larger) {
+        int[] result = new int[smaller.length];
+        int count = 0;
+        int j = 0;
+        for (int value : smaller) {
+            while (j < larger.length && larger[j] < value) j++;
+            if (j == larger.length) break;
+            if (larger[j] == value) result[count++] = value;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static void addTrigrams(HashMap<Long, Posting> postings, String text, int app) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            postings.computeIfAbsent(trigram(text, i), key -> new Posting()).add(app);
+        }
+    }
+
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    private static String[] splitWords(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    // The sorted apps of one trigram while the index is built
+    private static final class Posting {
+        private int[] apps = new int[4];
+        private int size;
+
+        void add(int app) {
+            // Apps are added in order, so a repeat can only be the last one
+            if (size > 0 && apps[size - 1] == app) return;
+            if (size == apps.length) {
+                apps = Arrays.copyOf(apps, size * 2);
+            }
+            apps[size++] = app;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(apps, size);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.apptimetracker;
+
+import android.app.Application;
+import android.util.Log;
+
+/**
+ * Starts before any activity, service or job of the app, so it connects the Android-free parts
+ * to the Android logging before they run.
+ */
+public class AppTimeTrackerApplication extends Application {
+    private static final String TAG = "TaskScheduler";
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        TaskScheduler.getInstance().setFailureHandler((lane, e) -> Log.e(TAG, "Task in lane " + lane + " failed", e));
+    }
+}
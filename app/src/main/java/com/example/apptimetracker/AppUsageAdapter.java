@@ -1,27 +1,159 @@
 package com.example.apptimetracker;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
+import java.util.HashMap;
 import java.util.List;
 
+// Shows a PagedUsageList. Rows whose page is not read yet are bound as empty placeholders
+// and rebound once it arrives. submitList() diffs the loaded rows by package name on a background
+// thread, so only the rows that changed are rebound and a row that moved is moved.
 public class AppUsageAdapter extends RecyclerView.Adapter<AppUsageAdapter.ViewHolder> {
 
-    private List<AppUsageInfo> usageList;
+    // Payload for a row whose app and limit are unchanged and only shows a new usage time
+    private static final Object PAYLOAD_USAGE_TIME = new Object();
+    private static final String DIFF_TASK = "diff";
+
     private OnItemClickListener listener; // Listener for clicks
+    private final TaskScheduler.Group tasks;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private PagedUsageList list;
+    // Counts submitList() calls; a diff that finishes after a newer one was submitted is dropped
+    private int submitGeneration;
+    private final PagedUsageList.Listener rowsLoadedListener = this::notifyItemRangeChanged;
+    // Stable IDs by package name; assigned on first sight so two packages never share an ID
+    private final HashMap<String, Long> itemIds = new HashMap<>();
 
     // Interface for click events
     public interface OnItemClickListener {
         void onItemClick(AppUsageInfo item);
     }
 
-    public AppUsageAdapter(List<AppUsageInfo> usageList, OnItemClickListener listener) {
-        this.usageList = usageList;
+    /**
+     * @param tasks Where the diffs run; the owner shuts it down with its lifecycle.
+     */
+    public AppUsageAdapter(OnItemClickListener listener, TaskScheduler.Group tasks) {
         this.listener = listener;
+        this.tasks = tasks;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Shows a new list once it is diffed against the shown one. Loaded rows are matched by package
+     * name wherever they are in either list; placeholders only match the placeholder at the same
+     * position. Must be called on the main thread; the list is swapped in on it as well.
+     */
+    public void submitList(@Nullable PagedUsageList newList) {
+        final int generation = ++submitGeneration;
+        // Read here, as the lists are only read on the main thread
+        AppUsageInfo[] oldRows = loadedRows(list);
+        AppUsageInfo[] newRows = loadedRows(newList);
+        if (oldRows.length == 0 || newRows.length == 0) {
+            // Nothing to match; all rows are inserted or removed
+            show(newList, DiffUtil.calculateDiff(new RowDiff(oldRows, newRows)));
+            return;
+        }
+        // A diff that is still waiting is replaced, since its result would be dropped anyway
+        tasks.execute(TaskScheduler.Lane.UI, DIFF_TASK, () -> {
+            DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new RowDiff(oldRows, newRows));
+            mainHandler.post(() -> {
+                if (generation == submitGeneration) {
+                    show(newList, diff);
+                }
+            });
+        });
+    }
+
+    // The shown list only changes here, so it always has the size the diff was computed from
+    private void show(@Nullable PagedUsageList newList, DiffUtil.DiffResult diff) {
+        if (list != null) {
+            list.setListener(null);
+        }
+        list = newList;
+        if (newList != null) {
+            newList.setListener(rowsLoadedListener);
+        }
+        diff.dispatchUpdatesTo(this);
+    }
+
+    /**
+     * @return The list on screen; a list passed to {@link #submitList} replaces it once it is diffed.
+     */
+    @Nullable
+    public PagedUsageList getList() {
+        return list;
+    }
+
+    // The rows as they are now, null where a row is not loaded
+    private static AppUsageInfo[] loadedRows(@Nullable PagedUsageList list) {
+        int size = (list != null) ? list.size() : 0;
+        AppUsageInfo[] rows = new AppUsageInfo[size];
+        for (int position = 0; position < size; position++) {
+            rows[position] = list.peek(position);
+        }
+        return rows;
+    }
+
+    private static final class RowDiff extends DiffUtil.Callback {
+        private final AppUsageInfo[] oldRows;
+        private final AppUsageInfo[] newRows;
+
+        RowDiff(AppUsageInfo[] oldRows, AppUsageInfo[] newRows) {
+            this.oldRows = oldRows;
+            this.newRows = newRows;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldRows.length;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newRows.length;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            AppUsageInfo oldItem = oldRows[oldPosition];
+            AppUsageInfo newItem = newRows[newPosition];
+            if (oldItem == null || newItem == null) {
+                return oldItem == newItem && oldPosition == newPosition;
+            }
+            return oldItem.packageName.equals(newItem.packageName);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            AppUsageInfo oldItem = oldRows[oldPosition];
+            AppUsageInfo newItem = newRows[newPosition];
+            // A placeholder is rebound in case its page has arrived meanwhile
+            if (oldItem == null || newItem == null) return false;
+            return oldItem.appName.equals(newItem.appName)
+                    && oldItem.usageTimeMillis == newItem.usageTimeMillis
+                    && oldItem.formattedUsageTime.equals(newItem.formattedUsageTime)
+                    && oldItem.formattedLimit.equals(newItem.formattedLimit);
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(int oldPosition, int newPosition) {
+            AppUsageInfo oldItem = oldRows[oldPosition];
+            AppUsageInfo newItem = newRows[newPosition];
+            if (oldItem == null || newItem == null) return null;
+            boolean onlyUsageChanged = oldItem.appName.equals(newItem.appName)
+                    && oldItem.formattedLimit.equals(newItem.formattedLimit);
+            return onlyUsageChanged ? PAYLOAD_USAGE_TIME : null;
+        }
     }
 
     @NonNull
@@ -34,34 +166,91 @@ public class AppUsageAdapter extends RecyclerView.Adapter<AppUsageAdapter.ViewHo
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        AppUsageInfo info = usageList.get(position);
-        // Pass the item and listener to the ViewHolder
-        holder.bind(info, listener);
+        AppUsageInfo info = list.get(position);
+        if (info == null) {
+            holder.bindPlaceholder();
+        } else {
+            // Pass the item and listener to the ViewHolder
+            holder.bind(info, listener);
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        AppUsageInfo info = list.peek(position);
+        if (info != null && payloads.size() == 1 && payloads.get(0) == PAYLOAD_USAGE_TIME) {
+            holder.bindUsageTime(info, listener);
+        } else {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        // Its icon is no longer on screen, so it must not hold up the ones that are
+        holder.unbind();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        AppUsageInfo info = list.peek(position);
+        if (info == null) {
+            // Placeholders are positional, below every package's ID
+            return -1L - position;
+        }
+        Long id = itemIds.get(info.packageName);
+        if (id == null) {
+            id = (long) itemIds.size();
+            itemIds.put(info.packageName, id);
+        }
+        return id;
     }
 
     @Override
     public int getItemCount() {
-        return usageList.size();
+        return (list != null) ? list.size() : 0;
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
         public ImageView appIcon;
         public TextView appName;
         public TextView usageTime;
+        public TextView limit;
 
         public ViewHolder(View view) {
             super(view);
             appIcon = view.findViewById(R.id.image_view_app_icon);
             appName = view.findViewById(R.id.text_view_app_name);
             usageTime = view.findViewById(R.id.text_view_usage_time);
+            limit = view.findViewById(R.id.text_view_limit);
         }
 
         // Bind data and set the click listener
         public void bind(final AppUsageInfo item, final OnItemClickListener listener) {
-            appIcon.setImageDrawable(item.appIcon);
+            AppIconCache.getInstance(itemView.getContext()).loadInto(item.packageName, appIcon);
             appName.setText(item.appName);
+            limit.setText(item.formattedLimit);
+            bindUsageTime(item, listener);
+        }
+
+        // The row's page is still being read
+        public void bindPlaceholder() {
+            AppIconCache.getInstance(itemView.getContext()).cancel(appIcon);
+            appIcon.setImageDrawable(null);
+            appName.setText("");
+            limit.setText("");
+            usageTime.setText("");
+            itemView.setOnClickListener(null);
+        }
+
+        public void unbind() {
+            AppIconCache.getInstance(itemView.getContext()).cancel(appIcon);
+        }
+
+        // Only the usage time changed; the icon, name and limit are still correct
+        public void bindUsageTime(final AppUsageInfo item, final OnItemClickListener listener) {
             usageTime.setText(item.formattedUsageTime);
             itemView.setOnClickListener(v -> listener.onItemClick(item));
         }
     }
-}
\ No newline at end of file
+}
@@ -1,19 +1,21 @@
 package com.example.apptimetracker;
 
-import android.graphics.drawable.Drawable;
-
+// Immutable, so a loaded snapshot can be handed from the loader thread to the UI as is.
+// Icons are not kept here but loaded per row from AppIconCache.
 public class AppUsageInfo {
-    public Drawable appIcon;
-    public String appName;
-    public String packageName; // Add this
-    public String formattedUsageTime;
-    public long usageTimeMillis;
+    public final String appName;
+    public final String packageName;
+    public final String formattedUsageTime;
+    public final long usageTimeMillis;
+    // The app's own limit or the default one, ready to show
+    public final String formattedLimit;
 
-    public AppUsageInfo(Drawable appIcon, String appName, String formattedUsageTime, long usageTimeMillis, String packageName) {
-        this.appIcon = appIcon;
+    public AppUsageInfo(String appName, String formattedUsageTime, long usageTimeMillis, String packageName,
+                        String formattedLimit) {
         this.appName = appName;
         this.formattedUsageTime = formattedUsageTime;
         this.usageTimeMillis = usageTimeMillis;
-        this.packageName = packageName; // Add this
+        this.packageName = packageName;
+        this.formattedLimit = formattedLimit;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,204 @@
+package com.example.apptimetracker;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The compact binary export format. After the header ({@link #MAGIC} and a version byte) the
+ * file is a list of tagged records with all numbers as varints:
+ * <ul>
+ *     <li>PACKAGE: a name in UTF-8, which gets the next package id (0, 1, 2, ...);</li>
+ *     <li>DEFAULT_LIMIT: millis;</li>
+ *     <li>LIMIT: package id, millis;</li>
+ *     <li>HOUR: package id, hour start as a zigzag difference to the previous HOUR, millis;</li>
+ *     <li>DAY and WEEK: the same for a day or a week, as a difference to the previous record of
+ *     its kind;</li>
+ *     <li>END: the number of records before it, so a cut-off file is detected.</li>
+ * </ul>
+ * Hours, days and weeks are exported in time order, so one usually takes 5 to 8 bytes.
+ * Version 1 files, from before days and weeks were exported, are still read.
+ */
+final class BinaryTransfer {
+    static final byte[] MAGIC = {'A', 'T', 'T', 'X'};
+    private static final int VERSION = 2;
+
+    private static final int TAG_END = 0;
+    private static final int TAG_PACKAGE = 1;
+    private static final int TAG_DEFAULT_LIMIT = 2;
+    private static final int TAG_LIMIT = 3;
+    private static final int TAG_HOUR = 4;
+    private static final int TAG_DAY = 5;
+    private static final int TAG_WEEK = 6;
+
+    private BinaryTransfer() {}
+
+    static final class Writer implements UsageRecords.Writer {
+        private final ChannelOutput out;
+        private final HashMap<String, Integer> packageIds = new HashMap<>();
+        private long previousHourStart;
+        private long previousDayStart;
+        private long previousWeekStart;
+        private long records;
+
+        Writer(ChannelOutput out) throws IOException {
+            this.out = out;
+            out.writeBytes(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        @Override
+        public void writeDefaultLimit(long limitMillis) throws IOException {
+            out.writeByte(TAG_DEFAULT_LIMIT);
+            out.writeVarLong(limitMillis);
+            records++;
+        }
+
+        @Override
+        public void writeLimit(String packageName, long limitMillis) throws IOException {
+            int packageId = packageId(packageName);
+            out.writeByte(TAG_LIMIT);
+            out.writeVarLong(packageId);
+            out.writeVarLong(limitMillis);
+            records++;
+        }
+
+        @Override
+        public void writeHour(String packageName, long hourStart, long usageMillis) throws IOException {
+            writeUsage(TAG_HOUR, packageName, hourStart - previousHourStart, usageMillis);
+            previousHourStart = hourStart;
+        }
+
+        @Override
+        public void writeDay(String packageName, long dayStart, long usageMillis) throws IOException {
+            writeUsage(TAG_DAY, packageName, dayStart - previousDayStart, usageMillis);
+            previousDayStart = dayStart;
+        }
+
+        @Override
+        public void writeWeek(String packageName, long weekStart, long usageMillis) throws IOException {
+            writeUsage(TAG_WEEK, packageName, weekStart - previousWeekStart, usageMillis);
+            previousWeekStart = weekStart;
+        }
+
+        @Override
+        public long finish() throws IOException {
+            out.writeByte(TAG_END);
+            out.writeVarLong(records);
+            out.flush();
+            return records;
+        }
+
+        private void writeUsage(int tag, String packageName, long delta, long usageMillis) throws IOException {
+            int packageId = packageId(packageName);
+            out.writeByte(tag);
+            out.writeVarLong(packageId);
+            out.writeVarLong((delta << 1) ^ (delta >> 63));
+            out.writeVarLong(usageMillis);
+            records++;
+        }
+
+        // Defines the package the first time it is used
+        private int packageId(String packageName) throws IOException {
+            Integer packageId = packageIds.get(packageName);
+            if (packageId == null) {
+                packageId = packageIds.size();
+                packageIds.put(packageName, packageId);
+                byte[] name = packageName.getBytes(StandardCharsets.UTF_8);
+                out.writeByte(TAG_PACKAGE);
+                out.writeVarLong(name.length);
+                out.writeBytes(name);
+            }
+            return packageId;
+        }
+    }
+
+    static final class Reader implements UsageRecords.Reader {
+        // Longer than any real package name; guards against allocating for a corrupt length
+        private static final int MAX_NAME_LENGTH = 1024;
+
+        private final ChannelInput in;
+        private final ArrayList<String> packageNames = new ArrayList<>();
+        private final byte[] nameBuffer = new byte[MAX_NAME_LENGTH];
+
+        /**
+         * @param in Positioned right after {@link #MAGIC}.
+         */
+        Reader(ChannelInput in) {
+            this.in = in;
+        }
+
+        @Override
+        public void read(UsageRecords.Listener listener) throws IOException {
+            int version = in.readByte();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported export version " + version);
+            }
+            long previousHourStart = 0;
+            long previousDayStart = 0;
+            long previousWeekStart = 0;
+            long records = 0;
+            while (true) {
+                int tag = in.readByte();
+                switch (tag) {
+                    case TAG_PACKAGE:
+                        long length = in.readVarLong();
+                        if (length <= 0 || length > MAX_NAME_LENGTH) {
+                            throw new IOException("Bad package name length " + length);
+                        }
+                        in.readFully(nameBuffer, (int) length);
+                        packageNames.add(new String(nameBuffer, 0, (int) length, StandardCharsets.UTF_8));
+                        break;
+                    case TAG_DEFAULT_LIMIT:
+                        listener.onDefaultLimit(in.readVarLong());
+                        records++;
+                        break;
+                    case TAG_LIMIT:
+                        String limitPackage = packageName(in.readVarLong());
+                        listener.onLimit(limitPackage, in.readVarLong());
+                        records++;
+                        break;
+                    case TAG_HOUR:
+                        String hourPackage = packageName(in.readVarLong());
+                        previousHourStart += readDelta();
+                        listener.onHour(hourPackage, previousHourStart, in.readVarLong());
+                        records++;
+                        break;
+                    case TAG_DAY:
+                        String dayPackage = packageName(in.readVarLong());
+                        previousDayStart += readDelta();
+                        listener.onDay(dayPackage, previousDayStart, in.readVarLong());
+                        records++;
+                        break;
+                    case TAG_WEEK:
+                        String weekPackage = packageName(in.readVarLong());
+                        previousWeekStart += readDelta();
+                        listener.onWeek(weekPackage, previousWeekStart, in.readVarLong());
+                        records++;
+                        break;
+                    case TAG_END:
+                        long expected = in.readVarLong();
+                        if (expected != records) {
+                            throw new IOException("Expected " + expected + " records but read " + records);
+                        }
+                        return;
+                    default:
+                        throw new IOException("Unknown record tag " + tag);
+                }
+            }
+        }
+
+        private long readDelta() throws IOException {
+            long zigzag = in.readVarLong();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        private String packageName(long packageId) throws IOException {
+            if (packageId < 0 || packageId >= packageNames.size()) {
+                throw new IOException("Unknown package id " + packageId);
+            }
+            return packageNames.get((int) packageId);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.apptimetracker;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Buffered reads from a channel through one fixed buffer that is refilled as it is consumed,
+ * so a file of any size is read with the same, small amount of memory.
+ */
+public class ChannelInput {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(ChannelOutput.BUFFER_SIZE);
+    private boolean endOfInput;
+
+    public ChannelInput(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    /**
+     * @return The next byte (0 to 255), or -1 at the end of the input.
+     */
+    public int read() throws IOException {
+        if (!buffer.hasRemaining() && !fill(1)) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    public int readByte() throws IOException {
+        int b = read();
+        if (b < 0) throw new EOFException();
+        return b;
+    }
+
+    public void readFully(byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            if (!buffer.hasRemaining() && !fill(1)) {
+                throw new EOFException();
+            }
+            int count = Math.min(buffer.remaining(), length - offset);
+            buffer.get(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Reads a varint written by {@link ChannelOutput#writeVarLong}.
+     */
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Checks whether the input continues with the given bytes; if so they are consumed,
+     * otherwise nothing is.
+     */
+    public boolean skipIfNext(byte[] expected) throws IOException {
+        if (buffer.remaining() < expected.length && !fill(expected.length)) {
+            return false;
+        }
+        int position = buffer.position();
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(position + i) != expected[i]) {
+                return false;
+            }
+        }
+        buffer.position(position + expected.length);
+        return true;
+    }
+
+    // Reads until at least minBytes are buffered; false if the input ends first
+    private boolean fill(int minBytes) throws IOException {
+        buffer.compact();
+        try {
+            while (buffer.position() < minBytes && !endOfInput) {
+                if (channel.read(buffer) < 0) {
+                    endOfInput = true;
+                }
+            }
+        } finally {
+            buffer.flip();
+        }
+        return buffer.remaining() >= minBytes;
+    }
+}
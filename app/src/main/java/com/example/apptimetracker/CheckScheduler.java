@@ -0,0 +1,11 @@
+package com.example.apptimetracker;
+
+// Runs UsageEngine.check() after a delay; a Handler on a device, simulated time in tests
+public interface CheckScheduler {
+    /**
+     * Replaces any pending check with one that runs after the delay.
+     */
+    void schedule(long delayMillis);
+
+    void cancel();
+}
@@ -0,0 +1,8 @@
+package com.example.apptimetracker;
+
+// Wall clock time in milliseconds, replaceable so the engine can run on simulated time
+public interface Clock {
+    Clock SYSTEM = System::currentTimeMillis;
+
+    long now();
+}
@@ -0,0 +1,47 @@
+package com.example.apptimetracker;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+/**
+ * Reports changes of the date, the wall clock or the time zone.
+ * The date broadcast also arrives at midnight, so a day can roll over while tracking is parked.
+ */
+public class ClockChangeMonitor {
+
+    private final Context context;
+    private final Runnable listener;
+    private boolean registered;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            listener.run();
+        }
+    };
+
+    public ClockChangeMonitor(Context context, Runnable listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (registered) return;
+        IntentFilter filter = new IntentFilter();
+        // ACTION_TIME_CHANGED is the TIME_SET broadcast
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_DATE_CHANGED);
+        context.registerReceiver(receiver, filter);
+        registered = true;
+    }
+
+    public void stop() {
+        if (registered) {
+            context.unregisterReceiver(receiver);
+            registered = false;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.apptimetracker;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The CSV export format, one record per line:
+ * <pre>
+ * record,package_name,start,millis
+ * default_limit,,,3600000
+ * limit,com.example.app,,1800000
+ * hour,com.example.app,1700000000000,754000
+ * day,com.example.app,1699916400000,5400000
+ * week,com.example.app,1699830000000,21600000
+ * end,,,5
+ * </pre>
+ * {@code start} is the start of the hour, day or week in epoch milliseconds. Files from before
+ * days and weeks were exported name it {@code hour_start}. Package names never contain commas
+ * or quotes, so no field is quoted. Every line ends with a line feed, and the last one is the
+ * {@code end} record with the number of records before it, so a file that was cut short, even
+ * at a line boundary, is detected. Files with the {@code hour_start} header have no end record.
+ */
+final class CsvTransfer {
+    private static final String HEADER = "record,package_name,start,millis";
+    private static final String HOURS_ONLY_HEADER = "record,package_name,hour_start,millis";
+    private static final String DEFAULT_LIMIT = "default_limit";
+    private static final String LIMIT = "limit";
+    private static final String HOUR = "hour";
+    private static final String DAY = "day";
+    private static final String WEEK = "week";
+    private static final String END = "end";
+
+    private CsvTransfer() {}
+
+    static final class Writer implements UsageRecords.Writer {
+        private static final byte[] HEADER_LINE = (HEADER + "\n").getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] DEFAULT_LIMIT_PREFIX = (DEFAULT_LIMIT + ",,,").getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] LIMIT_PREFIX = (LIMIT + ",").getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] HOUR_PREFIX = (HOUR + ",").getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] DAY_PREFIX = (DAY + ",").getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] WEEK_PREFIX = (WEEK + ",").getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] END_PREFIX = (END + ",,,").getBytes(StandardCharsets.US_ASCII);
+
+        private final ChannelOutput out;
+        // The same few hundred names repeat in every hour, so each is encoded only once
+        private final HashMap<String, byte[]> encodedNames = new HashMap<>();
+        private long records;
+
+        Writer(ChannelOutput out) throws IOException {
+            this.out = out;
+            out.writeBytes(HEADER_LINE);
+        }
+
+        @Override
+        public void writeDefaultLimit(long limitMillis) throws IOException {
+            out.writeBytes(DEFAULT_LIMIT_PREFIX);
+            out.writeDecimal(limitMillis);
+            out.writeByte('\n');
+            records++;
+        }
+
+        @Override
+        public void writeLimit(String packageName, long limitMillis) throws IOException {
+            out.writeBytes(LIMIT_PREFIX);
+            out.writeBytes(encode(packageName));
+            out.writeByte(',');
+            out.writeByte(',');
+            out.writeDecimal(limitMillis);
+            out.writeByte('\n');
+            records++;
+        }
+
+        @Override
+        public void writeHour(String packageName, long hourStart, long usageMillis) throws IOException {
+            writeUsage(HOUR_PREFIX, packageName, hourStart, usageMillis);
+        }
+
+        @Override
+        public void writeDay(String packageName, long dayStart, long usageMillis) throws IOException {
+            writeUsage(DAY_PREFIX, packageName, dayStart, usageMillis);
+        }
+
+        @Override
+        public void writeWeek(String packageName, long weekStart, long usageMillis) throws IOException {
+            writeUsage(WEEK_PREFIX, packageName, weekStart, usageMillis);
+        }
+
+        @Override
+        public long finish() throws IOException {
+            out.writeBytes(END_PREFIX);
+            out.writeDecimal(records);
+            out.writeByte('\n');
+            out.flush();
+            return records;
+        }
+
+        private void writeUsage(byte[] prefix, String packageName, long start, long usageMillis)
+                throws IOException {
+            out.writeBytes(prefix);
+            out.writeBytes(encode(packageName));
+            out.writeByte(',');
+            out.writeDecimal(start);
+            out.writeByte(',');
+            out.writeDecimal(usageMillis);
+            out.writeByte('\n');
+            records++;
+        }
+
+        private byte[] encode(String packageName) {
+            byte[] bytes = encodedNames.get(packageName);
+            if (bytes == null) {
+                bytes = packageName.getBytes(StandardCharsets.UTF_8);
+                encodedNames.put(packageName, bytes);
+            }
+            return bytes;
+        }
+    }
+
+    static final class Reader implements UsageRecords.Reader {
+        private static final int FIELDS = 4;
+
+        private final ChannelInput in;
+        // The current line's fields; only grows if a line has a longer field than any before
+        private final byte[][] fields = new byte[FIELDS][64];
+        private final int[] lengths = new int[FIELDS];
+        private long lineNumber;
+
+        Reader(ChannelInput in) {
+            this.in = in;
+        }
+
+        @Override
+        public void read(UsageRecords.Listener listener) throws IOException {
+            String header = readLine() ? text(0) + "," + text(1) + "," + text(2) + "," + text(3) : null;
+            if (!HEADER.equals(header) && !HOURS_ONLY_HEADER.equals(header)) {
+                throw new IOException("Not an export file: the first line must be " + HEADER);
+            }
+            // Files from before the end record was written just end
+            boolean needsEnd = HEADER.equals(header);
+            boolean ended = false;
+            long records = 0;
+            while (readLine()) {
+                if (lengths[0] == 0 && lengths[1] == 0 && lengths[2] == 0 && lengths[3] == 0) {
+                    continue;
+                }
+                String record = text(0);
+                if (ended) {
+                    throw error("record after the end of the file");
+                }
+                if (END.equals(record)) {
+                    long expected = number(3);
+                    if (expected != records) {
+                        throw error("expected " + expected + " records but read " + records);
+                    }
+                    ended = true;
+                    continue;
+                }
+                records++;
+                if (HOUR.equals(record)) {
+                    listener.onHour(packageName(), number(2), number(3));
+                } else if (DAY.equals(record)) {
+                    listener.onDay(packageName(), number(2), number(3));
+                } else if (WEEK.equals(record)) {
+                    listener.onWeek(packageName(), number(2), number(3));
+                } else if (LIMIT.equals(record)) {
+                    listener.onLimit(packageName(), number(3));
+                } else if (DEFAULT_LIMIT.equals(record)) {
+                    listener.onDefaultLimit(number(3));
+                } else {
+                    throw error("unknown record \"" + record + "\"");
+                }
+            }
+            if (needsEnd && !ended) {
+                throw new IOException("The file is truncated: it has no end record");
+            }
+        }
+
+        // Splits the next line into the field buffers; false at the end of the input
+        private boolean readLine() throws IOException {
+            Arrays.fill(lengths, 0);
+            int field = 0;
+            int b = in.read();
+            if (b < 0) return false;
+            lineNumber++;
+            while (b != '\n') {
+                // The writer ends every line, so the file was cut off in the middle of this one
+                if (b < 0) throw error("file is truncated");
+                if (b == ',') {
+                    if (++field == FIELDS) throw error("too many fields");
+                } else if (b != '\r') {
+                    append(field, (byte) b);
+                }
+                b = in.read();
+            }
+            return true;
+        }
+
+        private void append(int field, byte b) {
+            if (lengths[field] == fields[field].length) {
+                fields[field] = Arrays.copyOf(fields[field], fields[field].length * 2);
+            }
+            fields[field][lengths[field]++] = b;
+        }
+
+        private String text(int field) {
+            return new String(fields[field], 0, lengths[field], StandardCharsets.UTF_8);
+        }
+
+        private String packageName() throws IOException {
+            if (lengths[1] == 0) throw error("missing package name");
+            return text(1);
+        }
+
+        private long number(int field) throws IOException {
+            int length = lengths[field];
+            if (length == 0) throw error("missing number");
+            byte[] bytes = fields[field];
+            boolean negative = bytes[0] == '-';
+            int start = negative ? 1 : 0;
+            // Every long the writer can write, Long.MIN_VALUE included, has at most 19 digits
+            if (start == length || length - start > 19) throw error("bad number \"" + text(field) + "\"");
+            // Summed up negative, as Long.MIN_VALUE has no positive counterpart
+            long value = 0;
+            for (int i = start; i < length; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9 || value < (Long.MIN_VALUE + digit) / 10) {
+                    throw error("bad number \"" + text(field) + "\"");
+                }
+                value = value * 10 - digit;
+            }
+            if (!negative && value == Long.MIN_VALUE) throw error("bad number \"" + text(field) + "\"");
+            return negative ? value : -value;
+        }
+
+        private IOException error(String message) {
+            return new IOException("Line " + lineNumber + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.apptimetracker;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+// Rollup of hourly_usage, kept up to date by UsageHistoryDao.addAll()
+@Entity(tableName = "daily_usage",
+        primaryKeys = {"package_name", "day_start"},
+        indices = {@Index("day_start")})
+public class DailyUsage {
+    @NonNull
+    @ColumnInfo(name = "package_name")
+    public String packageName;
+
+    // Start of the local day (midnight) this bucket covers
+    @ColumnInfo(name = "day_start")
+    public long dayStart;
+
+    @ColumnInfo(name = "usage_millis")
+    public long usageMillis;
+}
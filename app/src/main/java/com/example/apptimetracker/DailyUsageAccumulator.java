@@ -0,0 +1,117 @@
+package com.example.apptimetracker;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps today's foreground time per package in memory.
+ * It is seeded once from the system's usage stats and then updated from foreground changes,
+ * so looking up an app's usage does not need a call into {@code UsageStatsManager}.
+ * Not thread safe; the service only uses it from the main thread.
+ */
+public class DailyUsageAccumulator {
+
+    public interface OnIntervalClosedListener {
+        void onIntervalClosed(String packageName, long startTime, long endTime);
+    }
+
+    // Foreground time of all finished intervals today
+    private final HashMap<String, Long> totals = new HashMap<>();
+    private String openPackage;
+    private long openSince;
+    private OnIntervalClosedListener intervalListener;
+
+    public void setOnIntervalClosedListener(OnIntervalClosedListener listener) {
+        this.intervalListener = listener;
+    }
+
+    /**
+     * Replaces all totals with the given values, e.g. at service start or on a new day.
+     * @param systemTotals Foreground time per package as reported by the system.
+     * @param now The current time; an app that is in the foreground is counted from here.
+     */
+    public void seed(Map<String, Long> systemTotals, long now) {
+        totals.clear();
+        totals.putAll(systemTotals);
+        if (openPackage != null) {
+            openSince = now;
+        }
+    }
+
+    /**
+     * Drops all totals for a new day. A running interval is split at the start of the day;
+     * the part before it is still reported to the listener but no longer counted.
+     * @param dayStart When the new day started.
+     */
+    public void startNewDay(long dayStart) {
+        totals.clear();
+        if (openPackage != null && dayStart > openSince) {
+            if (intervalListener != null) {
+                intervalListener.onIntervalClosed(openPackage, openSince, dayStart);
+            }
+            openSince = dayStart;
+        }
+    }
+
+    /**
+     * Brings the totals back in line with the system's numbers.
+     * @param systemTotals Foreground time per package as reported by the system.
+     * @param openPackageLastUsed When the system last counted the app that is in the foreground now.
+     *                            Time before this is already part of {@code systemTotals}.
+     */
+    public void reconcile(Map<String, Long> systemTotals, long openPackageLastUsed) {
+        for (Map.Entry<String, Long> entry : systemTotals.entrySet()) {
+            totals.put(entry.getKey(), entry.getValue());
+        }
+        if (openPackage != null && openPackageLastUsed > openSince) {
+            openSince = openPackageLastUsed;
+        }
+    }
+
+    /**
+     * Closes the running interval of the previous foreground app and starts one for the new app.
+     * @param packageName The new foreground app, or null if none is tracked.
+     * @param timestamp When the change happened.
+     */
+    public void onForegroundChanged(@Nullable String packageName, long timestamp) {
+        if (openPackage != null && timestamp > openSince) {
+            add(openPackage, timestamp - openSince);
+            if (intervalListener != null) {
+                intervalListener.onIntervalClosed(openPackage, openSince, timestamp);
+            }
+        }
+        openPackage = packageName;
+        openSince = timestamp;
+    }
+
+    /**
+     * @return Today's foreground time of the package, including its running interval.
+     */
+    public long getUsage(String packageName, long now) {
+        Long total = totals.get(packageName);
+        long usage = (total != null) ? total : 0;
+        if (packageName.equals(openPackage) && now > openSince) {
+            usage += now - openSince;
+        }
+        return usage;
+    }
+
+    @Nullable
+    public String getOpenPackage() {
+        return openPackage;
+    }
+
+    /**
+     * @return A copy of the totals of the finished intervals, without the running one.
+     */
+    public Map<String, Long> getTotals() {
+        return new HashMap<>(totals);
+    }
+
+    private void add(String packageName, long millis) {
+        Long total = totals.get(packageName);
+        totals.put(packageName, (total != null) ? total + millis : millis);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.apptimetracker;
+
+/**
+ * The local day that usage is counted for.
+ * Its start and end are worked out once per day in the current time zone, so checking whether
+ * a time still belongs to it is two comparisons instead of a {@code Calendar} per check.
+ * Not thread safe.
+ */
+public final class DayWindow {
+
+    private long start;
+    private long end;
+
+    public DayWindow(long now) {
+        update(now);
+    }
+
+    public boolean contains(long time) {
+        return time >= start && time < end;
+    }
+
+    /**
+     * Moves the window to the day that contains {@code now}.
+     * @return Whether the boundaries moved, because a new day started or the clock or time zone changed.
+     */
+    public boolean update(long now) {
+        long newStart = UsageBuckets.getDayStart(now);
+        // Not start + 24h, so days with a DST switch get their real 23 or 25 hours
+        long newEnd = UsageBuckets.addDays(newStart, 1);
+        if (newStart == start && newEnd == end) return false;
+        start = newStart;
+        end = newEnd;
+        return true;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+}
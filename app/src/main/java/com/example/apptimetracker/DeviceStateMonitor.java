@@ -0,0 +1,85 @@
+package com.example.apptimetracker;
+
+import android.app.KeyguardManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.PowerManager;
+
+/**
+ * Tells whether the user can be using an app right now.
+ * The device counts as interactive while the screen is on, the keyguard is unlocked and the
+ * device is not in Doze. The listener is only called when that changes.
+ */
+public class DeviceStateMonitor {
+
+    public interface OnInteractiveChangedListener {
+        void onInteractiveChanged(boolean interactive);
+    }
+
+    private final Context context;
+    private final OnInteractiveChangedListener listener;
+    private final PowerManager powerManager;
+    private final KeyguardManager keyguardManager;
+    private boolean interactive;
+    private boolean registered;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            update();
+        }
+    };
+
+    public DeviceStateMonitor(Context context, OnInteractiveChangedListener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        this.keyguardManager = (KeyguardManager) context.getSystemService(Context.KEYGUARD_SERVICE);
+    }
+
+    /**
+     * Starts listening for screen, unlock and Doze changes.
+     * @return Whether the device is interactive right now.
+     */
+    public boolean start() {
+        if (!registered) {
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_SCREEN_ON);
+            filter.addAction(Intent.ACTION_SCREEN_OFF);
+            filter.addAction(Intent.ACTION_USER_PRESENT);
+            filter.addAction(PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED);
+            context.registerReceiver(receiver, filter);
+            registered = true;
+        }
+        interactive = isInteractiveNow();
+        return interactive;
+    }
+
+    public void stop() {
+        if (registered) {
+            context.unregisterReceiver(receiver);
+            registered = false;
+        }
+    }
+
+    public boolean isInteractive() {
+        return interactive;
+    }
+
+    private void update() {
+        boolean nowInteractive = isInteractiveNow();
+        if (nowInteractive != interactive) {
+            interactive = nowInteractive;
+            listener.onInteractiveChanged(nowInteractive);
+        }
+    }
+
+    private boolean isInteractiveNow() {
+        // When the screen turns on behind a lock screen we wait for USER_PRESENT
+        return powerManager.isInteractive()
+                && !keyguardManager.isKeyguardLocked()
+                && !powerManager.isDeviceIdleMode();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.apptimetracker;
+
+import android.app.usage.UsageEvents;
+import android.app.usage.UsageStatsManager;
+
+import androidx.annotation.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Tracks the foreground app from the {@link UsageStatsManager} event log.
+ * Each call to {@link #poll(long, Listener)} only reads the events recorded since the previous call,
+ * and the listener is only told about real changes of the foreground app.
+ */
+public class ForegroundAppDetector implements UsageEventSource {
+
+    private final UsageStatsManager usageStatsManager;
+    // Reused for every event so reading the log does not allocate per event
+    private final UsageEvents.Event event = new UsageEvents.Event();
+
+    private long cursor;
+    private String foregroundPackage;
+
+    /**
+     * @param usageStatsManager The system usage stats service.
+     * @param startTime The time to start reading events from on the first poll.
+     */
+    public ForegroundAppDetector(UsageStatsManager usageStatsManager, long startTime) {
+        this.usageStatsManager = usageStatsManager;
+        this.cursor = startTime;
+    }
+
+    /**
+     * Reads the events recorded since the last poll and reports any change of foreground app.
+     * @param now The current time.
+     */
+    @Override
+    public void poll(long now, Listener listener) {
+        if (now <= cursor) return;
+        TrackingMetrics.getInstance().countBinderCall();
+        UsageEvents events = usageStatsManager.queryEvents(cursor, now);
+        if (events == null) return;
+
+        // A pause is only reported if nothing else is resumed before the end of the batch,
+        // so switching between two activities of the same app is not seen as a change.
+        String pausedPackage = null;
+        long pausedAt = 0;
+        while (events.hasNextEvent()) {
+            events.getNextEvent(event);
+            long timestamp = event.getTimeStamp();
+            // Move the cursor to the newest event we have seen. Events that are written a little
+            // late are still picked up by the next poll because the cursor never jumps to "now".
+            cursor = Math.max(cursor, timestamp + 1);
+
+            // ACTIVITY_RESUMED/PAUSED share their values with the older MOVE_TO_FOREGROUND/BACKGROUND
+            switch (event.getEventType()) {
+                case UsageEvents.Event.ACTIVITY_RESUMED:
+                    String resumedPackage = event.getPackageName();
+                    pausedPackage = null;
+                    if (!Objects.equals(resumedPackage, foregroundPackage)) {
+                        foregroundPackage = resumedPackage;
+                        listener.onForegroundAppChanged(resumedPackage, timestamp);
+                    }
+                    break;
+                case UsageEvents.Event.ACTIVITY_PAUSED:
+                    if (event.getPackageName().equals(foregroundPackage)) {
+                        pausedPackage = foregroundPackage;
+                        pausedAt = timestamp;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (pausedPackage != null && pausedPackage.equals(foregroundPackage)) {
+            foregroundPackage = null;
+            listener.onForegroundAppChanged(null, pausedAt);
+        }
+    }
+
+    /**
+     * Reads on from where a previous instance stopped, e.g. after the service was restarted.
+     * @param cursor The previous instance's {@link #getCursor()}.
+     * @param foregroundPackage The previous instance's {@link #getForegroundPackage()}.
+     */
+    public void resumeFrom(long cursor, @Nullable String foregroundPackage) {
+        this.cursor = cursor;
+        this.foregroundPackage = foregroundPackage;
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    @Override
+    public void clearForeground() {
+        foregroundPackage = null;
+    }
+
+    @Nullable
+    public String getForegroundPackage() {
+        return foregroundPackage;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.apptimetracker;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+@Entity(tableName = "hourly_usage",
+        primaryKeys = {"package_name", "hour_start"},
+        indices = {@Index("hour_start")})
+public class HourlyUsage {
+    @NonNull
+    @ColumnInfo(name = "package_name")
+    public String packageName;
+
+    // Start of the local clock hour this bucket covers
+    @ColumnInfo(name = "hour_start")
+    public long hourStart;
+
+    @ColumnInfo(name = "usage_millis")
+    public long usageMillis;
+}
@@ -0,0 +1,66 @@
+package com.example.apptimetracker;
+
+import android.content.Context;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the configured time limits.
+ * All rows of {@code app_limits} are loaded once, lookups are served from memory, and single
+ * entries are refreshed when the user changes a limit.
+ */
+public class LimitCache implements LimitStore {
+    private final Context context;
+    private final AppLimitDao appLimitDao;
+    private final ConcurrentHashMap<String, Long> limits = new ConcurrentHashMap<>();
+    private volatile long defaultLimit;
+    private volatile boolean loaded;
+
+    public LimitCache(Context context, AppLimitDao appLimitDao) {
+        this.context = context.getApplicationContext();
+        this.appLimitDao = appLimitDao;
+    }
+
+    /**
+     * Loads all specific limits and the default limit. Must not be called on the main thread.
+     */
+    public void load() {
+        TrackingMetrics.getInstance().countDatabaseQuery();
+        List<AppLimit> appLimits = appLimitDao.getAllLimits();
+        limits.clear();
+        for (AppLimit appLimit : appLimits) {
+            limits.put(appLimit.packageName, appLimit.timeLimitMillis);
+        }
+        defaultLimit = SettingsHelper.getDefaultLimit(context);
+        loaded = true;
+    }
+
+    /**
+     * Reloads the limit of a single app. Must not be called on the main thread.
+     */
+    public void refresh(String packageName) {
+        TrackingMetrics.getInstance().countDatabaseQuery();
+        AppLimit appLimit = appLimitDao.getLimitForApp(packageName);
+        if (appLimit != null) {
+            limits.put(packageName, appLimit.timeLimitMillis);
+        } else {
+            limits.remove(packageName);
+        }
+    }
+
+    public void refreshDefault() {
+        defaultLimit = SettingsHelper.getDefaultLimit(context);
+    }
+
+    @Override
+    public long getLimit(String packageName) {
+        Long limit = limits.get(packageName);
+        return (limit != null) ? limit : defaultLimit;
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return loaded;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.apptimetracker;
+
+// The configured limits as seen by UsageEngine; LimitCache on a device
+public interface LimitStore {
+    boolean isLoaded();
+
+    /**
+     * @return The app's own limit, or the default limit if it has none.
+     */
+    long getLimit(String packageName);
+}
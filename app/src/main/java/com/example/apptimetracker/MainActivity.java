@@ -1,24 +1,29 @@
 package com.example.apptimetracker;
 
-import android.app.usage.UsageStats;
-import android.app.usage.UsageStatsManager;
-import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.content.pm.PackageManager;
-import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.text.Editable;
 import android.text.InputType;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.LinearLayout;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
@@ -37,37 +42,73 @@ import com.github.mikephil.charting.formatter.IndexAxisValueFormatter;
 import com.github.mikephil.charting.formatter.ValueFormatter;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Collections;
+import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 
 public class MainActivity extends AppCompatActivity implements AppUsageAdapter.OnItemClickListener {
 
     private static final String TAG = "MainActivity";
+    // Key of the dashboard load, so at most one is ever waiting
+    private static final String LOAD_TASK = "snapshot";
+    // Key of the query for a new sort order of the snapshot on screen
+    private static final String SORT_TASK = "sort";
+    // Key of the build of the search index for the snapshot on screen
+    private static final String SEARCH_INDEX_TASK = "search-index";
+    // The "Last 24 Hours" numbers come from the system and change without any database write,
+    // so a snapshot older than this is reloaded on resume even if nothing was written
+    private static final long SNAPSHOT_MAX_AGE = TimeUnit.MINUTES.toMillis(1);
 
     private enum SortType { NAME, TIME }
     private enum SortOrder { ASC, DESC }
     private SortType currentSortType = SortType.TIME;
     private SortOrder currentSortOrder = SortOrder.DESC;
+    private UsageRange currentRange = UsageRange.DAY;
 
     private LinearLayout layoutTableHeaders;
     private Button buttonSetDefaultLimit;
     private BarChart barChart;
+    private Spinner spinnerUsageRange;
+    private EditText editTextSearch;
     private RecyclerView recyclerView;
     private AppUsageAdapter adapter;
-    private List<AppUsageInfo> appUsageInfoList;
+    private UsageSnapshot currentSnapshot;
     private TextView headerAppName, headerUsageTime, textViewEmptyState;
     private SwipeRefreshLayout swipeRefreshLayout;
     private AppDatabase db;
-    private ExecutorService databaseExecutor = Executors.newSingleThreadExecutor();
+    private final TaskScheduler.Group tasks = TaskScheduler.getInstance().newGroup();
+    private UsageSnapshotLoader snapshotLoader;
+    private int loadGeneration;
+    private int sortGeneration;
+    // Built the first time the user searches a snapshot; null until then
+    private AppSearchIndex searchIndex;
+    private UsageSnapshot searchIndexSnapshot;
+    private UsageDataObserver usageDataObserver;
+    private long snapshotShownAt;
+    // A load was requested but its snapshot is not shown yet
+    private boolean reloadPending;
     private SwitchMaterial switchTrackingService;
     private static final String PREFS_NAME = "AppTimeTrackerPrefs";
     private static final String KEY_SERVICE_ENABLED = "serviceEnabled";
 
+    private final ActivityResultLauncher<String> exportCsvLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(TransferFormat.CSV.mimeType),
+            uri -> exportData(uri, TransferFormat.CSV));
+    private final ActivityResultLauncher<String> exportBinaryLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(TransferFormat.BINARY.mimeType),
+            uri -> exportData(uri, TransferFormat.BINARY));
+    private final ActivityResultLauncher<String[]> importLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::importData);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -78,6 +119,7 @@ public class MainActivity extends AppCompatActivity implements AppUsageAdapter.O
 
         swipeRefreshLayout = findViewById(R.id.swipe_refresh_layout);
         barChart = findViewById(R.id.bar_chart_app_usage);
+        spinnerUsageRange = findViewById(R.id.spinner_usage_range);
         recyclerView = findViewById(R.id.recycler_view_app_usage);
         textViewEmptyState = findViewById(R.id.text_view_empty_state);
         headerAppName = findViewById(R.id.header_app_name);
@@ -85,16 +127,39 @@ public class MainActivity extends AppCompatActivity implements AppUsageAdapter.O
         buttonSetDefaultLimit = findViewById(R.id.button_set_default_limit);
         switchTrackingService = findViewById(R.id.switch_tracking_service);
         layoutTableHeaders = findViewById(R.id.layout_table_headers);
+        editTextSearch = findViewById(R.id.edit_text_search);
 
         db = AppDatabase.getDatabase(this);
+        snapshotLoader = new UsageSnapshotLoader(this);
+        MaintenanceJobService.schedule(this);
+        // Subscribed for the whole life of the activity; changes while paused wait for onResume
+        usageDataObserver = new UsageDataObserver(db, this::loadUsageStatistics);
+        usageDataObserver.start();
 
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        appUsageInfoList = new ArrayList<>();
-        adapter = new AppUsageAdapter(appUsageInfoList, this);
+        adapter = new AppUsageAdapter(this, tasks);
         recyclerView.setAdapter(adapter);
 
         swipeRefreshLayout.setOnRefreshListener(this::loadUsageStatistics);
 
+        ArrayAdapter<UsageRange> rangeAdapter = new ArrayAdapter<>(this,
+                android.R.layout.simple_spinner_item, UsageRange.values());
+        rangeAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerUsageRange.setAdapter(rangeAdapter);
+        spinnerUsageRange.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                UsageRange range = UsageRange.values()[position];
+                if (range != currentRange) {
+                    currentRange = range;
+                    loadUsageStatistics();
+                }
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) { }
+        });
+
         SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
         boolean serviceEnabled = prefs.getBoolean(KEY_SERVICE_ENABLED, false);
         switchTrackingService.setChecked(serviceEnabled);
@@ -113,6 +178,18 @@ public class MainActivity extends AppCompatActivity implements AppUsageAdapter.O
             getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit().putBoolean(KEY_SERVICE_ENABLED, isChecked).apply();
         });
 
+        editTextSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) { }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) { }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                applySort();
+            }
+        });
         headerAppName.setOnClickListener(v -> sortData(SortType.NAME));
         headerUsageTime.setOnClickListener(v -> sortData(SortType.TIME));
         buttonSetDefaultLimit.setOnClickListener(v -> showSetLimitDialog(null));
@@ -121,61 +198,119 @@ public class MainActivity extends AppCompatActivity implements AppUsageAdapter.O
     @Override
     protected void onResume() {
         super.onResume();
-        loadUsageStatistics();
+        boolean changed = usageDataObserver.resume();
+        boolean stale = SystemClock.elapsedRealtime() - snapshotShownAt > SNAPSHOT_MAX_AGE;
+        if (changed || stale || reloadPending || currentSnapshot == null) {
+            loadUsageStatistics();
+        }
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        usageDataObserver.pause();
+        // A load that finishes after the user left would only be thrown away
+        cancelPendingLoad();
+        swipeRefreshLayout.setRefreshing(false);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        usageDataObserver.stop();
+        cancelPendingLoad();
+        snapshotLoader.release();
+        // An export or import that is already queued still finishes
+        tasks.shutdown();
+    }
+
+    /**
+     * Loads the usage statistics on a background thread and shows them as one snapshot.
+     * A newer load replaces the previous one if it is still waiting and interrupts it if it is running.
+     */
     private void loadUsageStatistics() {
         swipeRefreshLayout.setRefreshing(true);
-
-        UsageStatsManager usm = (UsageStatsManager) getSystemService(Context.USAGE_STATS_SERVICE);
-        Calendar calendar = Calendar.getInstance();
-        long endTime = calendar.getTimeInMillis();
-        calendar.add(Calendar.DAY_OF_YEAR, -1);
-        long startTime = calendar.getTimeInMillis();
-        List<UsageStats> usageStatsList = usm.queryUsageStats(UsageStatsManager.INTERVAL_DAILY, startTime, endTime);
-
-        appUsageInfoList.clear();
-
-        if (usageStatsList != null) {
-            for (UsageStats stats : usageStatsList) {
-                if (stats.getTotalTimeInForeground() > 0) {
-                    try {
-                        PackageManager pm = getPackageManager();
-                        String appName = (String) pm.getApplicationLabel(pm.getApplicationInfo(stats.getPackageName(), 0));
-                        Drawable appIcon = pm.getApplicationIcon(stats.getPackageName());
-                        String formattedTime = formatUsageTime(stats.getTotalTimeInForeground());
-                        String packageName = stats.getPackageName();
-                        appUsageInfoList.add(new AppUsageInfo(appIcon, appName, formattedTime, stats.getTotalTimeInForeground(), packageName));
-                    } catch (PackageManager.NameNotFoundException e) { /* ignore */ }
-                }
+        cancelPendingLoad();
+        reloadPending = true;
+        final int generation = ++loadGeneration;
+        final UsageRange range = currentRange;
+        final PagedUsageList.Order order = getListOrder();
+        final List<Long> shownSnapshotIds = getShownSnapshotIds();
+        tasks.execute(TaskScheduler.Lane.UI, LOAD_TASK, () -> {
+            UsageSnapshot snapshot;
+            PagedUsageList list;
+            try {
+                snapshot = snapshotLoader.load(range, shownSnapshotIds);
+                list = PagedUsageList.open(this, tasks, snapshot, order);
+            } catch (CancellationException e) {
+                return;
             }
+            runOnUiThread(() -> {
+                // Ignore results of a load that was replaced or cancelled in the meantime
+                if (generation != loadGeneration || isDestroyed()) return;
+                showSnapshot(snapshot, list);
+            });
+        });
+    }
+
+    /**
+     * The snapshots that must stay readable while a new one loads: the one the list is still
+     * reading pages of, and the current one, which a sort or search opens next. They differ
+     * while a new snapshot's first sort is still running.
+     */
+    private List<Long> getShownSnapshotIds() {
+        List<Long> snapshotIds = new ArrayList<>(2);
+        PagedUsageList shownList = adapter.getList();
+        if (shownList != null && shownList.getSnapshotId() >= 0) {
+            snapshotIds.add(shownList.getSnapshotId());
+        }
+        if (currentSnapshot != null && !snapshotIds.contains(currentSnapshot.snapshotId)) {
+            snapshotIds.add(currentSnapshot.snapshotId);
         }
+        return snapshotIds;
+    }
+
+    private void cancelPendingLoad() {
+        loadGeneration++;
+        tasks.cancel(LOAD_TASK);
+    }
+
+    private void showSnapshot(UsageSnapshot snapshot, PagedUsageList list) {
+        currentSnapshot = snapshot;
+        searchIndex = null;
+        snapshotShownAt = SystemClock.elapsedRealtime();
+        reloadPending = false;
 
-        if (appUsageInfoList.isEmpty()) {
+        if (snapshot.isEmpty()) {
             barChart.setVisibility(View.GONE);
             recyclerView.setVisibility(View.GONE);
             layoutTableHeaders.setVisibility(View.GONE);
+            editTextSearch.setVisibility(View.GONE);
             textViewEmptyState.setVisibility(View.VISIBLE);
         } else {
             barChart.setVisibility(View.VISIBLE);
             recyclerView.setVisibility(View.VISIBLE);
             layoutTableHeaders.setVisibility(View.VISIBLE);
+            editTextSearch.setVisibility(View.VISIBLE);
             textViewEmptyState.setVisibility(View.GONE);
 
             ArrayList<BarEntry> chartEntries = new ArrayList<>();
             ArrayList<String> chartLabels = new ArrayList<>();
-            Collections.sort(appUsageInfoList, (o1, o2) -> Long.compare(o2.usageTimeMillis, o1.usageTimeMillis));
-            for (int i = 0; i < appUsageInfoList.size() && i < 3; i++) {
-                AppUsageInfo info = appUsageInfoList.get(i);
+            for (int i = 0; i < snapshot.topApps.size(); i++) {
+                AppUsageInfo info = snapshot.topApps.get(i);
                 long usageMinutes = TimeUnit.MILLISECONDS.toMinutes(info.usageTimeMillis);
                 chartEntries.add(new BarEntry(i, usageMinutes));
                 chartLabels.add(info.appName);
             }
             setupAndDrawChart(chartEntries, chartLabels);
+        }
 
+        if (list.getOrder() == getListOrder() && !isSearching()) {
+            showList(list);
+        } else {
+            // The sort was changed while the snapshot loaded, or the list is filtered
             applySort();
         }
-
         swipeRefreshLayout.setRefreshing(false);
     }
 
@@ -201,19 +336,21 @@ public class MainActivity extends AppCompatActivity implements AppUsageAdapter.O
                     if (appInfo == null) {
                         SettingsHelper.setDefaultLimit(this, limitMillis);
                         Toast.makeText(this, "Default limit saved.", Toast.LENGTH_SHORT).show();
+                        // Room does not see the preferences, so tell the dashboard directly
+                        usageDataObserver.notifyChanged();
                         Intent intent = new Intent(this, TrackingService.class);
-                        intent.setAction("ACTION_DEFAULT_LIMIT_UPDATED");
+                        intent.setAction(TrackingService.ACTION_DEFAULT_LIMIT_UPDATED);
                         startService(intent);
                     } else {
                         AppLimit newLimit = new AppLimit();
                         newLimit.packageName = appInfo.packageName;
                         newLimit.timeLimitMillis = limitMillis;
-                        databaseExecutor.execute(() -> {
+                        tasks.execute(TaskScheduler.Lane.UI, () -> {
                             db.appLimitDao().insertOrUpdate(newLimit);
                             runOnUiThread(() -> Toast.makeText(this, "Limit for " + appInfo.appName + " saved.", Toast.LENGTH_SHORT).show());
                             Intent intent = new Intent(this, TrackingService.class);
-                            intent.setAction("ACTION_SPECIFIC_LIMIT_UPDATED");
-                            intent.putExtra("PACKAGE_NAME", appInfo.packageName);
+                            intent.setAction(TrackingService.ACTION_SPECIFIC_LIMIT_UPDATED);
+                            intent.putExtra(TrackingService.EXTRA_PACKAGE_NAME, appInfo.packageName);
                             startService(intent);
                         });
                     }
@@ -226,6 +363,96 @@ public class MainActivity extends AppCompatActivity implements AppUsageAdapter.O
         builder.show();
     }
 
+    private void showRetentionDialog() {
+        String[] labels = {"3 months", "1 year", "2 years", "Forever"};
+        int[] days = {90, 365, 730, 0};
+        int current = SettingsHelper.getRetentionDays(this);
+        int checked = -1;
+        for (int i = 0; i < days.length; i++) {
+            if (days[i] == current) checked = i;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Keep Usage History For")
+                .setSingleChoiceItems(labels, checked, (dialog, which) -> {
+                    SettingsHelper.setRetentionDays(this, days[which]);
+                    Toast.makeText(this, "Older history is removed while the phone charges.", Toast.LENGTH_SHORT).show();
+                    dialog.dismiss();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void showExportDialog() {
+        String[] formats = {"CSV (for analysis tools)", "Binary (for another device)"};
+        new AlertDialog.Builder(this)
+                .setTitle("Export Limits and History")
+                .setItems(formats, (dialog, which) -> {
+                    TransferFormat format = (which == 0) ? TransferFormat.CSV : TransferFormat.BINARY;
+                    String fileName = "app-time-tracker-"
+                            + new SimpleDateFormat("yyyyMMdd", Locale.US).format(new Date()) + "." + format.extension;
+                    if (format == TransferFormat.CSV) {
+                        exportCsvLauncher.launch(fileName);
+                    } else {
+                        exportBinaryLauncher.launch(fileName);
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void exportData(Uri uri, TransferFormat format) {
+        if (uri == null) return;
+        tasks.execute(TaskScheduler.Lane.UI, () -> {
+            String message;
+            try (ParcelFileDescriptor descriptor = openDescriptor(uri, "wt");
+                 FileChannel channel = new FileOutputStream(descriptor.getFileDescriptor()).getChannel()) {
+                long records = new UsageExporter(this).export(channel, format);
+                message = "Exported " + records + " records.";
+            } catch (IOException | IllegalArgumentException e) {
+                Log.e(TAG, "Export failed", e);
+                message = "Export failed: " + e.getMessage();
+            }
+            String toast = message;
+            runOnUiThread(() -> Toast.makeText(this, toast, Toast.LENGTH_LONG).show());
+        });
+    }
+
+    private void importData(Uri uri) {
+        if (uri == null) return;
+        tasks.execute(TaskScheduler.Lane.UI, () -> {
+            String message;
+            try (ParcelFileDescriptor descriptor = openDescriptor(uri, "r");
+                 FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel()) {
+                UsageImporter.Result result = new UsageImporter(this).importFrom(channel);
+                message = "Imported " + result.limits + " limits and " + result.hoursAdded + " of "
+                        + result.hoursRead + " hours, " + result.daysAdded + " of " + result.daysRead
+                        + " days and " + result.weeksAdded + " of " + result.weeksRead + " weeks of history.";
+            } catch (IOException e) {
+                Log.e(TAG, "Import failed", e);
+                message = "Import failed: " + e.getMessage();
+            } catch (IllegalArgumentException e) {
+                // A number or field the readers did not check themselves; the file is still bad
+                Log.e(TAG, "Import failed", e);
+                message = "Import failed: " + uri.getLastPathSegment() + " is not a valid export (" + e.getMessage() + ")";
+            }
+            // Even a failed import may have written some batches, so always reload
+            Intent intent = new Intent(this, TrackingService.class);
+            intent.setAction(TrackingService.ACTION_ALL_LIMITS_UPDATED);
+            startService(intent);
+            String toast = message;
+            // The dashboard reloads through its UsageDataObserver once the imported rows are written
+            runOnUiThread(() -> Toast.makeText(this, toast, Toast.LENGTH_LONG).show());
+        });
+    }
+
+    private ParcelFileDescriptor openDescriptor(Uri uri, String mode) throws FileNotFoundException {
+        ParcelFileDescriptor descriptor = getContentResolver().openFileDescriptor(uri, mode);
+        if (descriptor == null) {
+            throw new FileNotFoundException("Cannot open " + uri);
+        }
+        return descriptor;
+    }
+
     private void sortData(SortType sortType) {
         if (currentSortType == sortType) {
             currentSortOrder = (currentSortOrder == SortOrder.ASC) ? SortOrder.DESC : SortOrder.ASC;
@@ -236,20 +463,85 @@ public class MainActivity extends AppCompatActivity implements AppUsageAdapter.O
         applySort();
     }
 
+    /**
+     * Queries the snapshot on screen in the current order; SQLite sorts it through an index
+     * and only the first page is read before it is shown.
+     */
     private void applySort() {
-        Collections.sort(appUsageInfoList, (o1, o2) -> {
-            int comparison = 0;
-            if (currentSortType == SortType.NAME) {
-                comparison = o1.appName.compareToIgnoreCase(o2.appName);
-            } else {
-                comparison = Long.compare(o1.usageTimeMillis, o2.usageTimeMillis);
-            }
-            return (currentSortOrder == SortOrder.ASC) ? comparison : -comparison;
+        updateSortHeaders();
+        if (currentSnapshot == null) return;
+        if (isSearching()) {
+            applySearch();
+            return;
+        }
+        final UsageSnapshot snapshot = currentSnapshot;
+        final PagedUsageList.Order order = getListOrder();
+        final int generation = ++sortGeneration;
+        tasks.execute(TaskScheduler.Lane.UI, SORT_TASK, () -> {
+            PagedUsageList list = PagedUsageList.open(this, tasks, snapshot, order);
+            runOnUiThread(() -> {
+                if (generation != sortGeneration || snapshot != currentSnapshot || isDestroyed()) return;
+                showList(list);
+            });
         });
-        adapter.notifyDataSetChanged();
+    }
+
+    private void showList(PagedUsageList list) {
+        // A sort that is still queued would replace this list with an older order
+        sortGeneration++;
+        tasks.cancel(SORT_TASK);
+        adapter.submitList(list);
         updateSortHeaders();
     }
 
+    private boolean isSearching() {
+        return editTextSearch.getText().toString().trim().length() > 0;
+    }
+
+    /**
+     * Shows the apps of the snapshot on screen that match the search box, in the current order.
+     * The index is built once per snapshot in the background; after that every keystroke is
+     * answered right here, without a query.
+     */
+    private void applySearch() {
+        // A sort query that is still running would replace the matches with the whole list
+        sortGeneration++;
+        tasks.cancel(SORT_TASK);
+        if (searchIndex == null) {
+            buildSearchIndex();
+            return;
+        }
+        boolean ascending = currentSortOrder == SortOrder.ASC;
+        List<AppUsageInfo> matches = searchIndex.search(editTextSearch.getText().toString(),
+                currentSortType == SortType.TIME, ascending);
+        adapter.submitList(PagedUsageList.of(matches, getListOrder()));
+    }
+
+    private void buildSearchIndex() {
+        // Already being built; it applies the search box as it is once it is done
+        if (searchIndexSnapshot == currentSnapshot) return;
+        final UsageSnapshot snapshot = currentSnapshot;
+        searchIndexSnapshot = snapshot;
+        tasks.execute(TaskScheduler.Lane.UI, SEARCH_INDEX_TASK, () -> {
+            AppSearchIndex index = snapshotLoader.loadSearchIndex(snapshot);
+            runOnUiThread(() -> {
+                if (snapshot != currentSnapshot || isDestroyed()) return;
+                searchIndex = index;
+                if (isSearching()) {
+                    applySearch();
+                }
+            });
+        });
+    }
+
+    private PagedUsageList.Order getListOrder() {
+        boolean ascending = currentSortOrder == SortOrder.ASC;
+        if (currentSortType == SortType.NAME) {
+            return ascending ? PagedUsageList.Order.NAME_ASCENDING : PagedUsageList.Order.NAME_DESCENDING;
+        }
+        return ascending ? PagedUsageList.Order.TIME_ASCENDING : PagedUsageList.Order.TIME_DESCENDING;
+    }
+
     private void updateSortHeaders() {
         headerAppName.setCompoundDrawablesWithIntrinsicBounds(0, 0, 0, 0);
         headerUsageTime.setCompoundDrawablesWithIntrinsicBounds(0, 0, 0, 0);
@@ -278,19 +570,6 @@ public class MainActivity extends AppCompatActivity implements AppUsageAdapter.O
         barChart.invalidate();
     }
 
-    private String formatUsageTime(long millis) {
-        long hours = TimeUnit.MILLISECONDS.toHours(millis);
-        long minutes = TimeUnit.MILLISECONDS.toMinutes(millis) % 60;
-        long seconds = TimeUnit.MILLISECONDS.toSeconds(millis) % 60;
-        if (hours > 0) {
-            return String.format("%d hr, %d min", hours, minutes);
-        } else if (minutes > 0) {
-            return String.format("%d min, %d sec", minutes, seconds);
-        } else {
-            return String.format("%d sec", seconds);
-        }
-    }
-
     private void setupChartAppearance(ArrayList<String> labels) {
         barChart.getDescription().setEnabled(false);
         barChart.getLegend().setEnabled(false);
@@ -321,6 +600,18 @@ public class MainActivity extends AppCompatActivity implements AppUsageAdapter.O
             // This now takes the user back to the permissions screen
             startActivity(new Intent(this, PermissionsActivity.class));
             return true;
+        } else if (item.getItemId() == R.id.action_service_metrics) {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        } else if (item.getItemId() == R.id.action_history_retention) {
+            showRetentionDialog();
+            return true;
+        } else if (item.getItemId() == R.id.action_export_data) {
+            showExportDialog();
+            return true;
+        } else if (item.getItemId() == R.id.action_import_data) {
+            importLauncher.launch(new String[]{"*/*"});
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
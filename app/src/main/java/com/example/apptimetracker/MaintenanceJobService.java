@@ -0,0 +1,85 @@
+package com.example.apptimetracker;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs {@link UsageMaintenance} about once a day while the device is charging and idle.
+ * Each chunk is its own task in the maintenance lane of the {@link TaskScheduler}, so tracking
+ * and dashboard work queued in between always runs first.
+ */
+public class MaintenanceJobService extends JobService {
+    private static final String TAG = "MaintenanceJobService";
+    private static final int JOB_ID = 1;
+    private static final String CHUNK_TASK = "maintenance";
+
+    private final TaskScheduler.Group tasks = TaskScheduler.getInstance().newGroup();
+    // Set when the system stops the current run, e.g. because the device is unplugged
+    private AtomicBoolean stopped = new AtomicBoolean();
+
+    /**
+     * Schedules the job unless it is already scheduled; it survives reboots.
+     */
+    public static void schedule(Context context) {
+        JobScheduler jobScheduler = context.getSystemService(JobScheduler.class);
+        if (jobScheduler == null || jobScheduler.getPendingJob(JOB_ID) != null) return;
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, MaintenanceJobService.class))
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .setPeriodic(TimeUnit.DAYS.toMillis(1))
+                .setPersisted(true)
+                .build();
+        jobScheduler.schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        stopped = new AtomicBoolean();
+        runNextChunk(params, new UsageMaintenance(this, System.currentTimeMillis()), stopped);
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        stopped.set(true);
+        tasks.cancel(CHUNK_TASK);
+        // Every step can start over, so simply try again next time
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        tasks.shutdown();
+    }
+
+    private void runNextChunk(JobParameters params, UsageMaintenance maintenance, AtomicBoolean stopped) {
+        tasks.execute(TaskScheduler.Lane.MAINTENANCE, CHUNK_TASK, () -> {
+            if (stopped.get()) return;
+            boolean more;
+            try {
+                more = maintenance.runChunk();
+            } catch (SQLiteException e) {
+                // E.g. the disk is full or the database is busy; every step can start over later
+                Log.w(TAG, "Maintenance failed after " + maintenance.getRowsDeleted() + " rows", e);
+                jobFinished(params, true);
+                return;
+            }
+            if (more) {
+                runNextChunk(params, maintenance, stopped);
+            } else {
+                Log.i(TAG, "Maintenance done, " + maintenance.getRowsDeleted() + " rows deleted");
+                jobFinished(params, false);
+            }
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.apptimetracker;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Debug screen with the live {@link TrackingMetrics} of the tracking service, which runs in
+ * the same process. The report can be written to a file in the app's external files directory.
+ */
+public class MetricsActivity extends AppCompatActivity {
+    private static final String TAG = "MetricsActivity";
+    private static final long REFRESH_INTERVAL = 1000;
+
+    private TextView textViewMetrics;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final TaskScheduler.Group tasks = TaskScheduler.getInstance().newGroup();
+
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            textViewMetrics.setText(TrackingMetrics.getInstance().dump(System.currentTimeMillis()));
+            handler.postDelayed(this, REFRESH_INTERVAL);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+
+        textViewMetrics = findViewById(R.id.text_view_metrics);
+        Button buttonExport = findViewById(R.id.button_export_metrics);
+        buttonExport.setOnClickListener(v -> exportMetrics());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        handler.post(refreshRunnable);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        handler.removeCallbacks(refreshRunnable);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        tasks.shutdown();
+    }
+
+    private void exportMetrics() {
+        long now = System.currentTimeMillis();
+        String report = TrackingMetrics.getInstance().dump(now);
+        String fileName = "metrics-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date(now)) + ".txt";
+        File directory = getExternalFilesDir(null);
+        if (directory == null) {
+            Toast.makeText(this, "Storage is not available.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        File file = new File(directory, fileName);
+        tasks.execute(TaskScheduler.Lane.UI, () -> {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(report.getBytes(StandardCharsets.UTF_8));
+                runOnUiThread(() -> Toast.makeText(this, "Saved to " + file.getPath(), Toast.LENGTH_LONG).show());
+            } catch (IOException e) {
+                Log.e(TAG, "Could not write " + file, e);
+                runOnUiThread(() -> Toast.makeText(this, "Export failed.", Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.apptimetracker;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.ChangedPackages;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+import android.provider.Settings;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.pm.PackageInfoCompat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Label, launcher flag, system flag and version of the installed apps, shared by the service
+ * and the dashboard. It is built once, persisted in {@code package_metadata}, and kept up to
+ * date from package broadcasts, so lookups on the hot path are map reads.
+ */
+public class PackageIndex {
+    private static volatile PackageIndex INSTANCE;
+
+    private final Context context;
+    private final PackageManager packageManager;
+    private final PackageMetadataDao packageMetadataDao;
+    private final ConcurrentHashMap<String, PackageMetadata> packages = new ConcurrentHashMap<>();
+    private final TaskScheduler.Group tasks = TaskScheduler.getInstance().newGroup();
+    private volatile boolean loaded;
+    // The system's package sequence number as of the last change the index has seen; guarded by this
+    private int sequenceNumber;
+
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data == null) return;
+            String packageName = data.getSchemeSpecificPart();
+            boolean replacing = intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+            if (Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction()) && replacing) {
+                // An update; PACKAGE_REPLACED follows with the new version
+                return;
+            }
+            AppIconCache.getInstance(context).invalidate(packageName);
+            // Removed and added again before the update ran is still one refresh
+            tasks.execute(TaskScheduler.Lane.MAINTENANCE, "package:" + packageName, () -> {
+                ensureLoaded();
+                refreshPackage(packageName, getLauncherPackages());
+                catchUpSequenceNumber();
+            });
+        }
+    };
+
+    public static PackageIndex getInstance(final Context context) {
+        if (INSTANCE == null) {
+            synchronized (PackageIndex.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new PackageIndex(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private PackageIndex(Context context) {
+        this.context = context;
+        this.packageManager = context.getPackageManager();
+        this.packageMetadataDao = AppDatabase.getDatabase(context).packageMetadataDao();
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        context.registerReceiver(packageReceiver, filter);
+    }
+
+    /**
+     * Loads the persisted index, or builds it if there is none, and catches up with the packages
+     * that changed while the app was not running. Must not be called on the main thread.
+     */
+    public synchronized void ensureLoaded() {
+        if (loaded) return;
+        List<PackageMetadata> stored = packageMetadataDao.getAll();
+        int storedSequence = SettingsHelper.getPackageSequenceNumber(context);
+        // Sequence numbers start over after a reboot, so only one from this boot can be asked about
+        boolean sameBoot = SettingsHelper.getPackageBootCount(context) == getBootCount();
+        if (stored.isEmpty() || storedSequence < 0 || !sameBoot) {
+            // First run, or the system can no longer tell us what changed
+            rebuild();
+            // The one call that reads every change since boot; later ones only ask for what is new
+            ChangedPackages changed = packageManager.getChangedPackages(0);
+            sequenceNumber = (changed != null) ? changed.getSequenceNumber() : 0;
+        } else {
+            for (PackageMetadata metadata : stored) {
+                packages.put(metadata.packageName, metadata);
+            }
+            // Null when nothing changed since then
+            ChangedPackages changed = packageManager.getChangedPackages(storedSequence);
+            sequenceNumber = (changed != null) ? changed.getSequenceNumber() : storedSequence;
+            if (changed != null) {
+                Set<String> launcherPackages = getLauncherPackages();
+                for (String packageName : changed.getPackageNames()) {
+                    refreshPackage(packageName, launcherPackages);
+                }
+            }
+        }
+        SettingsHelper.setPackageSequenceNumber(context, getBootCount(), sequenceNumber);
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Nullable
+    public PackageMetadata get(String packageName) {
+        return packages.get(packageName);
+    }
+
+    /**
+     * @return The app's label, or the package name if the app is unknown.
+     */
+    public String getLabel(String packageName) {
+        PackageMetadata metadata = packages.get(packageName);
+        return (metadata != null) ? metadata.label : packageName;
+    }
+
+    public boolean isLauncher(String packageName) {
+        PackageMetadata metadata = packages.get(packageName);
+        return metadata != null && metadata.isLauncher;
+    }
+
+    /**
+     * Returns the metadata of a package, indexing it first if it is missing. Unlike {@link #get}
+     * this may call the PackageManager, so it must not be called on the main thread.
+     */
+    @Nullable
+    public PackageMetadata getOrIndex(String packageName) {
+        PackageMetadata metadata = packages.get(packageName);
+        if (metadata == null) {
+            metadata = readPackage(packageName, getLauncherPackages());
+            if (metadata != null) {
+                packages.put(packageName, metadata);
+                packageMetadataDao.insertOrUpdate(metadata);
+            }
+        }
+        return metadata;
+    }
+
+    private void rebuild() {
+        Set<String> launcherPackages = getLauncherPackages();
+        Set<String> packageNames = new HashSet<>(launcherPackages);
+        Intent launchIntent = new Intent(Intent.ACTION_MAIN);
+        launchIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+        for (ResolveInfo resolveInfo : packageManager.queryIntentActivities(launchIntent, 0)) {
+            packageNames.add(resolveInfo.activityInfo.packageName);
+        }
+
+        List<PackageMetadata> indexed = new ArrayList<>();
+        for (String packageName : packageNames) {
+            PackageMetadata metadata = readPackage(packageName, launcherPackages);
+            if (metadata != null) {
+                indexed.add(metadata);
+            }
+        }
+        packageMetadataDao.replaceAll(indexed);
+        packages.clear();
+        for (PackageMetadata metadata : indexed) {
+            packages.put(metadata.packageName, metadata);
+        }
+    }
+
+    private void refreshPackage(String packageName, Set<String> launcherPackages) {
+        PackageMetadata metadata = readPackage(packageName, launcherPackages);
+        if (metadata != null) {
+            packages.put(packageName, metadata);
+            packageMetadataDao.insertOrUpdate(metadata);
+        } else {
+            packages.remove(packageName);
+            packageMetadataDao.delete(packageName);
+        }
+    }
+
+    @Nullable
+    private PackageMetadata readPackage(String packageName, Set<String> launcherPackages) {
+        try {
+            PackageInfo packageInfo = packageManager.getPackageInfo(packageName, 0);
+            ApplicationInfo applicationInfo = packageInfo.applicationInfo;
+            PackageMetadata metadata = new PackageMetadata();
+            metadata.packageName = packageName;
+            metadata.label = packageManager.getApplicationLabel(applicationInfo).toString();
+            metadata.isLauncher = launcherPackages.contains(packageName);
+            metadata.isSystem = (applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0;
+            metadata.versionCode = PackageInfoCompat.getLongVersionCode(packageInfo);
+            return metadata;
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    private Set<String> getLauncherPackages() {
+        Intent intent = new Intent(Intent.ACTION_MAIN);
+        intent.addCategory(Intent.CATEGORY_HOME);
+        Set<String> launcherPackages = new HashSet<>();
+        for (ResolveInfo resolveInfo : packageManager.queryIntentActivities(intent, PackageManager.MATCH_DEFAULT_ONLY)) {
+            launcherPackages.add(resolveInfo.activityInfo.packageName);
+        }
+        return launcherPackages;
+    }
+
+    /**
+     * Moves the stored sequence number past the change that was just handled, asking only for the
+     * changes since the cached number instead of every change since boot.
+     */
+    private synchronized void catchUpSequenceNumber() {
+        ChangedPackages changed = packageManager.getChangedPackages(sequenceNumber);
+        if (changed == null) return;
+        sequenceNumber = changed.getSequenceNumber();
+        SettingsHelper.setPackageSequenceNumber(context, getBootCount(), sequenceNumber);
+    }
+
+    private int getBootCount() {
+        return Settings.Global.getInt(context.getContentResolver(), Settings.Global.BOOT_COUNT, -1);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.apptimetracker;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+@Entity(tableName = "package_metadata")
+public class PackageMetadata {
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "package_name")
+    public String packageName;
+
+    @NonNull
+    @ColumnInfo(name = "label")
+    public String label;
+
+    @ColumnInfo(name = "is_launcher")
+    public boolean isLauncher;
+
+    @ColumnInfo(name = "is_system")
+    public boolean isSystem;
+
+    @ColumnInfo(name = "version_code")
+    public long versionCode;
+}
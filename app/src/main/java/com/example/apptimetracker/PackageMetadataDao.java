@@ -0,0 +1,36 @@
+package com.example.apptimetracker;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public interface PackageMetadataDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertOrUpdate(PackageMetadata packageMetadata);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<PackageMetadata> packages);
+
+    @Query("DELETE FROM package_metadata WHERE package_name = :packageName")
+    void delete(String packageName);
+
+    @Query("DELETE FROM package_metadata")
+    void clear();
+
+    @Query("SELECT * FROM package_metadata")
+    List<PackageMetadata> getAll();
+
+    /**
+     * Replaces the whole index with a freshly built one.
+     */
+    @Transaction
+    default void replaceAll(List<PackageMetadata> packages) {
+        clear();
+        insertAll(packages);
+    }
+}
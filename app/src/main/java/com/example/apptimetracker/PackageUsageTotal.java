@@ -0,0 +1,12 @@
+package com.example.apptimetracker;
+
+import androidx.room.ColumnInfo;
+
+// Total usage of one package over a queried range
+public class PackageUsageTotal {
+    @ColumnInfo(name = "package_name")
+    public String packageName;
+
+    @ColumnInfo(name = "usage_millis")
+    public long usageMillis;
+}
@@ -0,0 +1,173 @@
+package com.example.apptimetracker;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * The rows of one {@link UsageSnapshot} in one order, read from the database a page at a time as
+ * the list scrolls to them. SQLite sorts through the snapshot's indexes, so no more than a few
+ * pages are ever held in memory. A new sort order is a new list, opened with {@link #open}.
+ * Search results are small and already in memory, so they are wrapped as a whole with {@link #of}.
+ * All methods but {@link #open} must be called on the main thread.
+ */
+public class PagedUsageList {
+    static final int PAGE_SIZE = 50;
+    // Pages further than this from the one being read are dropped and read again when needed
+    private static final int MAX_PAGE_DISTANCE = 3;
+
+    public enum Order {
+        TIME_DESCENDING,
+        TIME_ASCENDING,
+        NAME_DESCENDING,
+        NAME_ASCENDING
+    }
+
+    public interface Listener {
+        // Called on the main thread once rows that were shown as placeholders are loaded
+        void onRowsLoaded(int start, int count);
+    }
+
+    private final SnapshotDao snapshotDao;
+    private final TaskScheduler.Group tasks;
+    private final long snapshotId;
+    private final int size;
+    private final Order order;
+    private final String defaultLimit;
+    private final SparseArray<List<AppUsageInfo>> pages = new SparseArray<>();
+    private final HashSet<Integer> loadingPages = new HashSet<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Listener listener;
+
+    /**
+     * Reads the first page right away, so the list can be shown without placeholders.
+     * Call on a background thread.
+     */
+    public static PagedUsageList open(Context context, TaskScheduler.Group tasks, UsageSnapshot snapshot, Order order) {
+        PagedUsageList list = new PagedUsageList(AppDatabase.getDatabase(context).snapshotDao(), tasks,
+                snapshot.snapshotId, snapshot.size, order, UsageSnapshotLoader.formatDefaultLimit(context));
+        if (list.size > 0) {
+            list.pages.put(0, list.readPage(0));
+        }
+        return list;
+    }
+
+    /**
+     * @param rows All rows of the list, already in the given order.
+     */
+    public static PagedUsageList of(List<AppUsageInfo> rows, Order order) {
+        PagedUsageList list = new PagedUsageList(null, null, -1, rows.size(), order, null);
+        for (int start = 0; start < rows.size(); start += PAGE_SIZE) {
+            list.pages.put(start / PAGE_SIZE, rows.subList(start, Math.min(start + PAGE_SIZE, rows.size())));
+        }
+        return list;
+    }
+
+    private PagedUsageList(SnapshotDao snapshotDao, TaskScheduler.Group tasks, long snapshotId, int size, Order order,
+                           String defaultLimit) {
+        this.snapshotDao = snapshotDao;
+        this.tasks = tasks;
+        this.snapshotId = snapshotId;
+        this.size = size;
+        this.order = order;
+        this.defaultLimit = defaultLimit;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * @return The snapshot whose rows are read on demand, or -1 if the list holds all its rows.
+     */
+    public long getSnapshotId() {
+        return (snapshotDao != null) ? snapshotId : -1;
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return The row, or null if its page is not loaded yet; it is loaded then and the listener
+     *         is told once it is there.
+     */
+    @Nullable
+    public AppUsageInfo get(int position) {
+        int page = position / PAGE_SIZE;
+        // A short page is loaded too; its missing rows stay placeholders instead of being read again
+        if (pages.get(page) == null) {
+            loadPage(page);
+        }
+        return peek(position);
+    }
+
+    /**
+     * @return The row if its page is loaded, without loading it otherwise.
+     */
+    @Nullable
+    public AppUsageInfo peek(int position) {
+        List<AppUsageInfo> page = pages.get(position / PAGE_SIZE);
+        int index = position % PAGE_SIZE;
+        // A page can come back short if the snapshot was replaced and deleted meanwhile
+        return (page != null && index < page.size()) ? page.get(index) : null;
+    }
+
+    private void loadPage(int page) {
+        if (!loadingPages.add(page)) return;
+        tasks.execute(TaskScheduler.Lane.UI, () -> {
+            List<AppUsageInfo> rows = readPage(page);
+            mainHandler.post(() -> {
+                loadingPages.remove(page);
+                dropPagesFarFrom(page);
+                pages.put(page, rows);
+                if (listener != null) {
+                    listener.onRowsLoaded(page * PAGE_SIZE, Math.min(PAGE_SIZE, size - page * PAGE_SIZE));
+                }
+            });
+        });
+    }
+
+    private void dropPagesFarFrom(int page) {
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            if (Math.abs(pages.keyAt(i) - page) > MAX_PAGE_DISTANCE) {
+                pages.removeAt(i);
+            }
+        }
+    }
+
+    private List<AppUsageInfo> readPage(int page) {
+        int offset = page * PAGE_SIZE;
+        List<SnapshotRow> rows;
+        switch (order) {
+            case TIME_ASCENDING:
+                rows = snapshotDao.getPageByTimeAscending(snapshotId, PAGE_SIZE, offset);
+                break;
+            case NAME_DESCENDING:
+                rows = snapshotDao.getPageByNameDescending(snapshotId, PAGE_SIZE, offset);
+                break;
+            case NAME_ASCENDING:
+                rows = snapshotDao.getPageByNameAscending(snapshotId, PAGE_SIZE, offset);
+                break;
+            default:
+                rows = snapshotDao.getPageByTimeDescending(snapshotId, PAGE_SIZE, offset);
+                break;
+        }
+        List<AppUsageInfo> infos = new ArrayList<>(rows.size());
+        for (SnapshotRow row : rows) {
+            infos.add(UsageSnapshotLoader.toAppUsageInfo(row, defaultLimit));
+        }
+        return infos;
+    }
+}
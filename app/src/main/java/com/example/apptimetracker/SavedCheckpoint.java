@@ -0,0 +1,20 @@
+package com.example.apptimetracker;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// The service's one TrackingCheckpoint, written in the same transaction as the history it covers
+@Entity(tableName = "tracking_checkpoint")
+public class SavedCheckpoint {
+    static final int ID = 0;
+
+    @PrimaryKey
+    @ColumnInfo(name = "id")
+    public int id = ID;
+
+    @NonNull
+    @ColumnInfo(name = "data")
+    public byte[] data;
+}
@@ -6,8 +6,15 @@ import android.content.SharedPreferences;
 public class SettingsHelper {
     private static final String PREFS_NAME = "AppTimeTrackerPrefs";
     private static final String KEY_DEFAULT_LIMIT = "defaultLimitMillis";
+    private static final String KEY_PACKAGE_SEQUENCE = "packageSequenceNumber";
+    private static final String KEY_PACKAGE_BOOT_COUNT = "packageBootCount";
+    private static final String KEY_RETENTION_DAYS = "retentionDays";
+    private static final String KEY_HOURS_COMPACTED_BEFORE = "historyCompactedBefore";
+    private static final String KEY_DAYS_COMPACTED_BEFORE = "daysCompactedBefore";
     // Default to 60 minutes if nothing is set
     private static final long FALLBACK_LIMIT = 60 * 60 * 1000;
+    // Two years of history unless the user picks something else; 0 keeps everything
+    private static final int FALLBACK_RETENTION_DAYS = 730;
 
     public static void setDefaultLimit(Context context, long limitMillis) {
         SharedPreferences.Editor editor = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
@@ -19,4 +26,62 @@ public class SettingsHelper {
         SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         return prefs.getLong(KEY_DEFAULT_LIMIT, FALLBACK_LIMIT);
     }
-}
\ No newline at end of file
+
+    // Sequence numbers start over with every boot, so the boot they belong to is stored with them
+    public static void setPackageSequenceNumber(Context context, int bootCount, int sequenceNumber) {
+        SharedPreferences.Editor editor = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        editor.putInt(KEY_PACKAGE_BOOT_COUNT, bootCount);
+        editor.putInt(KEY_PACKAGE_SEQUENCE, sequenceNumber);
+        editor.apply();
+    }
+
+    // -1 means the package index has not been built yet
+    public static int getPackageSequenceNumber(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return prefs.getInt(KEY_PACKAGE_SEQUENCE, -1);
+    }
+
+    // -1 if unknown, e.g. for an index stored before the boot count was
+    public static int getPackageBootCount(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return prefs.getInt(KEY_PACKAGE_BOOT_COUNT, -1);
+    }
+
+    public static void setRetentionDays(Context context, int days) {
+        SharedPreferences.Editor editor = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        editor.putInt(KEY_RETENTION_DAYS, days);
+        editor.apply();
+    }
+
+    // 0 means the history is kept forever
+    public static int getRetentionDays(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return prefs.getInt(KEY_RETENTION_DAYS, FALLBACK_RETENTION_DAYS);
+    }
+
+    public static void setHoursCompactedBefore(Context context, long time) {
+        SharedPreferences.Editor editor = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        editor.putLong(KEY_HOURS_COMPACTED_BEFORE, time);
+        // Written before the hours are deleted, so it must be on disk before the first chunk
+        editor.commit();
+    }
+
+    // Hours before this may be gone from hourly_usage but are still counted in the rollups
+    public static long getHoursCompactedBefore(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return prefs.getLong(KEY_HOURS_COMPACTED_BEFORE, 0);
+    }
+
+    public static void setDaysCompactedBefore(Context context, long time) {
+        SharedPreferences.Editor editor = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit();
+        editor.putLong(KEY_DAYS_COMPACTED_BEFORE, time);
+        // Same as for the hours
+        editor.commit();
+    }
+
+    // Days before this may be gone from daily_usage but are still counted in weekly_usage
+    public static long getDaysCompactedBefore(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return prefs.getLong(KEY_DAYS_COMPACTED_BEFORE, 0);
+    }
+}
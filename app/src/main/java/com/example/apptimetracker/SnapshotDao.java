@@ -0,0 +1,71 @@
+package com.example.apptimetracker;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * The dashboard's snapshots. A snapshot is written once by {@link UsageSnapshotLoader} and then
+ * read a page at a time by {@link PagedUsageList}, in whichever order the list is sorted by.
+ */
+@Dao
+public interface SnapshotDao {
+    String PAGE_COLUMNS = "SELECT s.package_name, s.label, s.usage_millis, l.time_limit_millis "
+            + "FROM snapshot_usage s LEFT JOIN app_limits l ON l.package_name = s.package_name "
+            + "WHERE s.snapshot_id = :snapshotId ";
+
+    @Query("SELECT IFNULL(MAX(snapshot_id), 0) FROM snapshot_usage")
+    long getLatestSnapshotId();
+
+    @Query("DELETE FROM snapshot_usage WHERE snapshot_id NOT IN (:keepSnapshotIds)")
+    void deleteAllExcept(List<Long> keepSnapshotIds);
+
+    @Insert
+    void insertAll(List<SnapshotUsage> rows);
+
+    // Packages with history in the range that the package index has not seen yet
+    @Query("SELECT DISTINCT package_name FROM daily_usage WHERE day_start >= :startTime AND day_start < :endTime "
+            + "AND package_name NOT IN (SELECT package_name FROM package_metadata)")
+    List<String> getUnindexedDailyPackages(long startTime, long endTime);
+
+    @Query("SELECT DISTINCT package_name FROM weekly_usage WHERE week_start >= :startTime AND week_start < :endTime "
+            + "AND package_name NOT IN (SELECT package_name FROM package_metadata)")
+    List<String> getUnindexedWeeklyPackages(long startTime, long endTime);
+
+    /**
+     * Sums the range in SQLite straight into the snapshot, without a row per app in Java.
+     * Packages without metadata are uninstalled apps and left out.
+     */
+    @Query("INSERT INTO snapshot_usage (snapshot_id, package_name, label, usage_millis) "
+            + "SELECT :snapshotId, d.package_name, m.label, SUM(d.usage_millis) FROM daily_usage d "
+            + "JOIN package_metadata m ON m.package_name = d.package_name "
+            + "WHERE d.day_start >= :startTime AND d.day_start < :endTime "
+            + "GROUP BY d.package_name HAVING SUM(d.usage_millis) > 0")
+    void insertDailyTotals(long snapshotId, long startTime, long endTime);
+
+    @Query("INSERT INTO snapshot_usage (snapshot_id, package_name, label, usage_millis) "
+            + "SELECT :snapshotId, w.package_name, m.label, SUM(w.usage_millis) FROM weekly_usage w "
+            + "JOIN package_metadata m ON m.package_name = w.package_name "
+            + "WHERE w.week_start >= :startTime AND w.week_start < :endTime "
+            + "GROUP BY w.package_name HAVING SUM(w.usage_millis) > 0")
+    void insertWeeklyTotals(long snapshotId, long startTime, long endTime);
+
+    @Query("SELECT COUNT(*) FROM snapshot_usage WHERE snapshot_id = :snapshotId")
+    int count(long snapshotId);
+
+    // The package name breaks ties, so pages never overlap or skip a row.
+    // OFFSET walks the index, which stays cheap at a few hundred or thousand apps.
+    @Query(PAGE_COLUMNS + "ORDER BY s.usage_millis DESC, s.package_name DESC LIMIT :limit OFFSET :offset")
+    List<SnapshotRow> getPageByTimeDescending(long snapshotId, int limit, int offset);
+
+    @Query(PAGE_COLUMNS + "ORDER BY s.usage_millis, s.package_name LIMIT :limit OFFSET :offset")
+    List<SnapshotRow> getPageByTimeAscending(long snapshotId, int limit, int offset);
+
+    @Query(PAGE_COLUMNS + "ORDER BY s.label DESC, s.package_name DESC LIMIT :limit OFFSET :offset")
+    List<SnapshotRow> getPageByNameDescending(long snapshotId, int limit, int offset);
+
+    @Query(PAGE_COLUMNS + "ORDER BY s.label, s.package_name LIMIT :limit OFFSET :offset")
+    List<SnapshotRow> getPageByNameAscending(long snapshotId, int limit, int offset);
+}
@@ -0,0 +1,18 @@
+package com.example.apptimetracker;
+
+import androidx.room.ColumnInfo;
+
+// One row of a list page: a snapshot total with the app's own limit, if it has one
+public class SnapshotRow {
+    @ColumnInfo(name = "package_name")
+    public String packageName;
+
+    @ColumnInfo(name = "label")
+    public String label;
+
+    @ColumnInfo(name = "usage_millis")
+    public long usageMillis;
+
+    @ColumnInfo(name = "time_limit_millis")
+    public Long timeLimitMillis;
+}
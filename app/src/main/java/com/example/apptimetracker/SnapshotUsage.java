@@ -0,0 +1,29 @@
+package com.example.apptimetracker;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+// One app's total in one dashboard snapshot. The indexes cover both list orders, so a page of
+// the list is an index range scan instead of a sort of the whole snapshot.
+@Entity(tableName = "snapshot_usage",
+        primaryKeys = {"snapshot_id", "package_name"},
+        indices = {@Index({"snapshot_id", "usage_millis", "package_name"}),
+                @Index({"snapshot_id", "label", "package_name"})})
+public class SnapshotUsage {
+    @ColumnInfo(name = "snapshot_id")
+    public long snapshotId;
+
+    @NonNull
+    @ColumnInfo(name = "package_name")
+    public String packageName;
+
+    // Sorted by the device locale, like the collation keys of the in-memory sort it replaced
+    @NonNull
+    @ColumnInfo(name = "label", collate = ColumnInfo.LOCALIZED)
+    public String label;
+
+    @ColumnInfo(name = "usage_millis")
+    public long usageMillis;
+}
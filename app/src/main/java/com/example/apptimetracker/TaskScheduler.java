@@ -0,0 +1,247 @@
+package com.example.apptimetracker;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The background threads of the app, shared by the service, the activities and the caches.
+ * Tracking work has a thread of its own, so it never waits for a dashboard load, an import or
+ * housekeeping that is already running. The other lanes share a small pool, where waiting tasks
+ * run by {@link Lane}. A task submitted with a key replaces the one with the same key that is
+ * still waiting, so a backlog never holds more than one task per key, and it never runs
+ * alongside a task of its group with the same key.
+ * <p>
+ * Components submit through their own {@link Group} and shut it down with their lifecycle.
+ * The threads stop after a while without work and are started again for the next task. A task
+ * that throws is counted, handed to the {@link FailureHandler} (which logs it on a device) and
+ * does not take the thread or the process down with it. Has no Android dependency.
+ */
+public final class TaskScheduler {
+
+    /** In order of priority. */
+    public enum Lane {
+        TRACKING,
+        UI,
+        MAINTENANCE
+    }
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    // Enough for a dashboard load to read alongside a long import, export or vacuum
+    private static final int BACKGROUND_THREADS = 2;
+    private static final TaskScheduler INSTANCE = new TaskScheduler(BACKGROUND_THREADS);
+
+    private final ThreadPoolExecutor trackingExecutor;
+    private final ThreadPoolExecutor backgroundExecutor;
+    private final TrackingMetrics metrics = TrackingMetrics.getInstance();
+    private volatile FailureHandler failureHandler;
+    private long sequence;
+
+    // Logs failed tasks; android.util.Log on a device, so this class stays free of Android
+    public interface FailureHandler {
+        void onTaskFailed(Lane lane, RuntimeException e);
+    }
+
+    public static TaskScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    TaskScheduler(int backgroundThreads) {
+        trackingExecutor = newExecutor(1, "app-tracking", Thread.NORM_PRIORITY);
+        backgroundExecutor = newExecutor(backgroundThreads, "app-tasks", Thread.NORM_PRIORITY - 1);
+    }
+
+    // An unbounded queue only ever starts the core threads; they exit when idle
+    private static ThreadPoolExecutor newExecutor(int threads, String name, int priority) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setPriority(priority);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private ThreadPoolExecutor executorFor(Lane lane) {
+        return (lane == Lane.TRACKING) ? trackingExecutor : backgroundExecutor;
+    }
+
+    /**
+     * @param handler Called on the failed task's thread. Null to only count failures.
+     */
+    public void setFailureHandler(FailureHandler handler) {
+        failureHandler = handler;
+    }
+
+    public Group newGroup() {
+        return new Group();
+    }
+
+    /**
+     * The tasks of one component. Not bound to a thread; it can be used from any thread.
+     */
+    public final class Group {
+        // Guarded by the scheduler
+        private final HashSet<Task> queued = new HashSet<>();
+        private final HashMap<String, Task> queuedByKey = new HashMap<>();
+        private final HashMap<Task, Thread> running = new HashMap<>();
+        // Keys of the running tasks; a waiting task with one of them is held back until it is done
+        private final HashSet<String> runningKeys = new HashSet<>();
+        private boolean shutDown;
+
+        private Group() {}
+
+        public void execute(Lane lane, Runnable command) {
+            execute(lane, null, command);
+        }
+
+        /**
+         * Runs the command on the lane's thread.
+         * @param key If a task with this key is still waiting, the command replaces it and takes
+         *            its place in the queue. Null to always queue a new task.
+         */
+        public void execute(Lane lane, String key, Runnable command) {
+            synchronized (TaskScheduler.this) {
+                if (shutDown) return;
+                Task waiting = (key != null) ? queuedByKey.get(key) : null;
+                if (waiting != null && waiting.lane == lane) {
+                    waiting.command = command;
+                    metrics.countCoalescedTask();
+                    return;
+                }
+                if (waiting != null) {
+                    drop(waiting);
+                }
+                Task task = new Task(this, lane, key, command, sequence++);
+                queued.add(task);
+                if (key != null) {
+                    queuedByKey.put(key, task);
+                }
+                metrics.taskQueued();
+                if (key == null || !runningKeys.contains(key)) {
+                    submit(task);
+                }
+            }
+        }
+
+        /**
+         * @return An executor that submits to this group in the given lane, for classes that only
+         *         need to hand off work.
+         */
+        public Executor executor(Lane lane) {
+            return command -> execute(lane, command);
+        }
+
+        /**
+         * Drops the waiting task with this key and interrupts it if it is running right now.
+         */
+        public void cancel(String key) {
+            synchronized (TaskScheduler.this) {
+                Task waiting = queuedByKey.get(key);
+                if (waiting != null) {
+                    drop(waiting);
+                }
+                for (HashMap.Entry<Task, Thread> entry : running.entrySet()) {
+                    if (key.equals(entry.getKey().key)) {
+                        entry.getValue().interrupt();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Stops taking new tasks. Tasks that are already queued still run, so e.g. a last history
+         * flush is not lost; use {@link #cancel} first for the ones that are no longer wanted.
+         */
+        public void shutdown() {
+            synchronized (TaskScheduler.this) {
+                shutDown = true;
+            }
+        }
+
+        private void submit(Task task) {
+            task.submitted = true;
+            executorFor(task.lane).execute(task);
+        }
+
+        private void drop(Task task) {
+            queued.remove(task);
+            queuedByKey.remove(task.key);
+            // A held task never reached the executor
+            if (!task.submitted || executorFor(task.lane).remove(task)) {
+                metrics.taskDequeued();
+            }
+        }
+
+        private void run(Task task) {
+            Runnable command;
+            synchronized (TaskScheduler.this) {
+                if (!queued.remove(task)) return;
+                if (task.key != null) {
+                    queuedByKey.remove(task.key);
+                    runningKeys.add(task.key);
+                }
+                command = task.command;
+                running.put(task, Thread.currentThread());
+            }
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                metrics.countFailedTask();
+                FailureHandler handler = failureHandler;
+                if (handler != null) {
+                    handler.onTaskFailed(task.lane, e);
+                }
+            } finally {
+                synchronized (TaskScheduler.this) {
+                    running.remove(task);
+                    if (task.key != null) {
+                        runningKeys.remove(task.key);
+                        // The next task with this key was held back until now
+                        Task next = queuedByKey.get(task.key);
+                        if (next != null && !next.submitted) {
+                            submit(next);
+                        }
+                    }
+                }
+                // A cancel that came in as the task finished must not hit the next one
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private final class Task implements Runnable, Comparable<Task> {
+        final Group group;
+        final Lane lane;
+        final String key;
+        final long sequence;
+        // Whether it was handed to an executor; false while held behind a running task with its key
+        boolean submitted;
+        // Replaced when a newer task with the same key is coalesced into this one
+        Runnable command;
+
+        Task(Group group, Lane lane, String key, Runnable command, long sequence) {
+            this.group = group;
+            this.lane = lane;
+            this.key = key;
+            this.command = command;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            metrics.taskDequeued();
+            group.run(this);
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byLane = Integer.compare(lane.ordinal(), other.lane.ordinal());
+            return (byLane != 0) ? byLane : Long.compare(sequence, other.sequence);
+        }
+    }
+}
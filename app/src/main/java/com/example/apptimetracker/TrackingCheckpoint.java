@@ -0,0 +1,133 @@
+package com.example.apptimetracker;
+
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What {@link TrackingService} needs to pick up where it left off after being killed: today's
+ * totals and alert states from {@link UsageEngine}, and how far {@link ForegroundAppDetector} had
+ * read the event log. A restarted service only replays the events since then, instead of
+ * querying the whole day again. Immutable and has no Android dependency.
+ */
+public final class TrackingCheckpoint {
+    private static final int VERSION = 1;
+
+    public final long dayStart;
+    // When it was taken; the foreground app is counted again from here
+    public final long savedAt;
+    // The event source reads on from here
+    public final long eventCursor;
+    // The foreground app as the event source saw it, launchers included
+    @Nullable public final String sourceForegroundPackage;
+    // The tracked foreground app
+    @Nullable public final String foregroundPackage;
+    // Today's usage per package up to savedAt
+    public final Map<String, Long> totals;
+    // Until when each app alerted today stays quiet; see AlertStates.getQuietTimes()
+    public final Map<String, Long> alertQuietTimes;
+
+    public TrackingCheckpoint(long dayStart, long savedAt, long eventCursor, @Nullable String sourceForegroundPackage,
+                              @Nullable String foregroundPackage, Map<String, Long> totals,
+                              Map<String, Long> alertQuietTimes) {
+        this.dayStart = dayStart;
+        this.savedAt = savedAt;
+        this.eventCursor = eventCursor;
+        this.sourceForegroundPackage = sourceForegroundPackage;
+        this.foregroundPackage = foregroundPackage;
+        this.totals = Collections.unmodifiableMap(totals);
+        this.alertQuietTimes = Collections.unmodifiableMap(alertQuietTimes);
+    }
+
+    /**
+     * @return The checkpoint as it is stored in {@code tracking_checkpoint}.
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeTo(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            // A ByteArrayOutputStream does not throw
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException If the data is cut short or was written by another version.
+     */
+    public static TrackingCheckpoint fromByteArray(byte[] data) throws IOException {
+        return readFrom(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeInt(VERSION);
+        output.writeLong(dayStart);
+        output.writeLong(savedAt);
+        output.writeLong(eventCursor);
+        writeNullable(output, sourceForegroundPackage);
+        writeNullable(output, foregroundPackage);
+        writeMap(output, totals);
+        writeMap(output, alertQuietTimes);
+    }
+
+    /**
+     * @throws IOException If the data is cut short or was written by another version.
+     */
+    public static TrackingCheckpoint readFrom(DataInput input) throws IOException {
+        int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unknown checkpoint version " + version);
+        }
+        long dayStart = input.readLong();
+        long savedAt = input.readLong();
+        long eventCursor = input.readLong();
+        String sourceForegroundPackage = readNullable(input);
+        String foregroundPackage = readNullable(input);
+        Map<String, Long> totals = readMap(input);
+        Map<String, Long> alertQuietTimes = readMap(input);
+        return new TrackingCheckpoint(dayStart, savedAt, eventCursor, sourceForegroundPackage, foregroundPackage,
+                totals, alertQuietTimes);
+    }
+
+    private static void writeNullable(DataOutput output, @Nullable String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullable(DataInput input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeMap(DataOutput output, Map<String, Long> map) throws IOException {
+        output.writeInt(map.size());
+        for (Map.Entry<String, Long> entry : map.entrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeLong(entry.getValue());
+        }
+    }
+
+    private static Map<String, Long> readMap(DataInput input) throws IOException {
+        int size = input.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid map size " + size);
+        }
+        HashMap<String, Long> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(input.readUTF(), input.readLong());
+        }
+        return map;
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.apptimetracker;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Always-on cost figures of the tracking service: how long each step of a check takes,
+ * how many binder calls and database queries it makes per hour, and how deep the
+ * {@link TaskScheduler} queue gets. All counters are lock free, so the main thread and the task
+ * thread never wait on each other to record, and reading them for the metrics screen never blocks
+ * either.
+ * Has no Android dependency, so the benchmark module can measure what recording costs.
+ */
+public final class TrackingMetrics {
+
+    // A check and its lookups take nanoseconds, about what timing them costs, so UsageEngine only
+    // times one check in UsageEngine.CHECK_SAMPLE_INTERVAL
+    public enum Stage {
+        DETECTION("Foreground detection"),
+        CHECK("Whole check"),
+        USAGE_LOOKUP("Usage lookup"),
+        LIMIT_LOOKUP("Limit lookup"),
+        OVERLAY("Overlay display");
+
+        final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final TrackingMetrics INSTANCE = new TrackingMetrics();
+
+    private final Histogram[] stages = new Histogram[Stage.values().length];
+    private final HourlyCounter binderCalls = new HourlyCounter();
+    private final HourlyCounter databaseQueries = new HourlyCounter();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final LongAdder coalescedTasks = new LongAdder();
+    private final LongAdder failedTasks = new LongAdder();
+    private final long createdAt = System.currentTimeMillis();
+
+    public static TrackingMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    TrackingMetrics() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new Histogram();
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos);
+    }
+
+    public void countBinderCall() {
+        binderCalls.increment(System.currentTimeMillis());
+    }
+
+    public void countDatabaseQuery() {
+        databaseQueries.increment(System.currentTimeMillis());
+    }
+
+    public void taskQueued() {
+        int depth = queueDepth.incrementAndGet();
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    public void taskDequeued() {
+        queueDepth.decrementAndGet();
+    }
+
+    /**
+     * Counts a task that replaced a waiting one with the same key instead of queueing.
+     */
+    public void countCoalescedTask() {
+        coalescedTasks.increment();
+    }
+
+    /**
+     * Counts a task that threw; the scheduler logs it and carries on.
+     */
+    public void countFailedTask() {
+        failedTasks.increment();
+    }
+
+    /**
+     * @return A plain text report of everything recorded since the process started.
+     */
+    public String dump(long now) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        StringBuilder out = new StringBuilder();
+        out.append("Recorded since ").append(dateFormat.format(new Date(createdAt)))
+                .append(", dumped ").append(dateFormat.format(new Date(now))).append("\n\n");
+
+        out.append(String.format(Locale.US, "%-22s %8s %10s %10s %10s %10s%n",
+                "Stage", "count", "mean", "p50", "p99", "max"));
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = stages[stage.ordinal()];
+            long count = histogram.count.sum();
+            long mean = (count > 0) ? histogram.sum.sum() / count : 0;
+            out.append(String.format(Locale.US, "%-22s %8d %10s %10s %10s %10s%n", stage.label, count,
+                    formatNanos(mean), formatNanos(histogram.percentile(0.50)),
+                    formatNanos(histogram.percentile(0.99)), formatNanos(histogram.max.get())));
+        }
+        out.append("(p50 and p99 are rounded up to a power of two nanoseconds)\n\n");
+
+        out.append("Task queue depth: ").append(queueDepth.get())
+                .append(" now, ").append(maxQueueDepth.get()).append(" max, ")
+                .append(coalescedTasks.sum()).append(" tasks coalesced, ")
+                .append(failedTasks.sum()).append(" failed\n\n");
+
+        out.append(String.format(Locale.US, "%-14s %12s %16s%n", "Hour", "Binder calls", "Database queries"));
+        SimpleDateFormat hourFormat = new SimpleDateFormat("MM-dd HH:00", Locale.US);
+        long currentHour = now / HOUR;
+        for (int hoursAgo = 0; hoursAgo < HourlyCounter.HOURS; hoursAgo++) {
+            long hour = currentHour - hoursAgo;
+            if ((hour + 1) * HOUR <= createdAt) break;
+            out.append(String.format(Locale.US, "%-14s %12d %16d%n", hourFormat.format(new Date(hour * HOUR)),
+                    binderCalls.get(hour), databaseQueries.get(hour)));
+        }
+        return out.toString();
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 10_000) return nanos + " ns";
+        if (nanos < 10_000_000) return (nanos / 1000) + " us";
+        return (nanos / 1_000_000) + " ms";
+    }
+
+    // Counts per power of two of nanoseconds, from 1 ns up to about 9 minutes
+    static final class Histogram {
+        private static final int BUCKETS = 40;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            // Bucket b holds values in [2^(b-1), 2^b)
+            int bucket = Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1);
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            sum.add(nanos);
+            if (nanos > max.get()) {
+                max.accumulateAndGet(nanos, Math::max);
+            }
+        }
+
+        /**
+         * @return The upper bound of the bucket holding the given percentile, capped at the
+         *         largest value seen, or 0 if empty.
+         */
+        long percentile(double fraction) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += buckets.get(i);
+            }
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(1L << i, max.get());
+            }
+            return max.get();
+        }
+    }
+
+    // One count per hour for the last HOURS hours, in a ring of slots reused as hours pass
+    static final class HourlyCounter {
+        static final int HOURS = 24;
+
+        private final AtomicLongArray counts = new AtomicLongArray(HOURS);
+        private final AtomicLongArray slotHours = new AtomicLongArray(HOURS);
+
+        void increment(long now) {
+            long hour = now / HOUR;
+            int slot = (int) (hour % HOURS);
+            long slotHour = slotHours.get(slot);
+            // The first count of a new hour claims the slot. A count racing with the claim may
+            // be lost, which is fine for a rate.
+            if (slotHour != hour && slotHours.compareAndSet(slot, slotHour, hour)) {
+                counts.set(slot, 0);
+            }
+            counts.incrementAndGet(slot);
+        }
+
+        long get(long hour) {
+            int slot = (int) (hour % HOURS);
+            return (slotHours.get(slot) == hour) ? counts.get(slot) : 0;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.example.apptimetracker;
 
-import android.app.ActivityManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
@@ -9,70 +8,131 @@ import android.app.usage.UsageStats;
 import android.app.usage.UsageStatsManager;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageManager;
-import android.content.pm.ResolveInfo;
-import android.graphics.PixelFormat;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.view.WindowManager;
-import android.widget.Button;
-import android.widget.TextView;
+import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
-import java.util.Calendar;
-import java.util.HashSet;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 
 public class TrackingService extends Service {
-    private static final int CHECK_INTERVAL = 10000; // 10 seconds
+    private static final String TAG = "TrackingService";
+    public static final String ACTION_DEFAULT_LIMIT_UPDATED = "ACTION_DEFAULT_LIMIT_UPDATED";
+    public static final String ACTION_SPECIFIC_LIMIT_UPDATED = "ACTION_SPECIFIC_LIMIT_UPDATED";
+    public static final String ACTION_ALL_LIMITS_UPDATED = "ACTION_ALL_LIMITS_UPDATED";
+    public static final String EXTRA_PACKAGE_NAME = "PACKAGE_NAME";
+    private static final int HISTORY_FLUSH_INTERVAL = 5 * 60 * 1000; // 5 minutes
+    private static final int DETECTION_INTERVAL = 2000; // 2 seconds
     private static final String CHANNEL_ID = "TrackingServiceChannel";
     private Handler handler = new Handler(Looper.getMainLooper());
     private AppDatabase db;
-    private ExecutorService databaseExecutor;
+    private TaskScheduler.Group tasks;
+    private final TrackingMetrics metrics = TrackingMetrics.getInstance();
+    private LimitCache limitCache;
+    private UsageIngestor usageIngestor;
 
-    private WindowManager windowManager;
-    private View alertView;
-    private HashSet<String> launcherPackages = new HashSet<>();
+    private AlertOverlay alertOverlay;
+    private PackageIndex packageIndex;
+    private UsageEngine engine;
+    private ForegroundAppDetector foregroundAppDetector;
+    private DeviceStateMonitor deviceStateMonitor;
+    private ClockChangeMonitor clockChangeMonitor;
+    private boolean trackingStarted;
+    // Restored from the checkpoint or seeding; nothing is detected or flushed before
+    private boolean engineStarted;
 
-    private Runnable usageCheckRunnable = new Runnable() {
+    // Only reads the usage events recorded since the last run; the limit check itself is
+    // triggered by the engine when the foreground app actually changes.
+    private Runnable detectionRunnable = new Runnable() {
         @Override
         public void run() {
-            checkForegroundApp();
-            handler.postDelayed(this, CHECK_INTERVAL);
+            engine.poll();
+            handler.postDelayed(this, DETECTION_INTERVAL);
         }
     };
 
+    // Runs when the foreground app is expected to cross its limit
+    private Runnable usageCheckRunnable = () -> engine.check();
+
+    private final CheckScheduler checkScheduler = new CheckScheduler() {
+        @Override
+        public void schedule(long delayMillis) {
+            handler.removeCallbacks(usageCheckRunnable);
+            handler.postDelayed(usageCheckRunnable, delayMillis);
+        }
+
+        @Override
+        public void cancel() {
+            handler.removeCallbacks(usageCheckRunnable);
+        }
+    };
+
+    private Runnable historyFlushRunnable = this::flushHistory;
+
     @Override
     public void onCreate() {
         super.onCreate();
         db = AppDatabase.getDatabase(this);
-        databaseExecutor = Executors.newSingleThreadExecutor();
-        windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
+        tasks = TaskScheduler.getInstance().newGroup();
+        limitCache = new LimitCache(this, db.appLimitDao());
+        usageIngestor = new UsageIngestor(db.usageHistoryDao(), tasks.executor(TaskScheduler.Lane.TRACKING));
+        packageIndex = PackageIndex.getInstance(this);
+        // Inflated now so the first alert only has to bind its text
+        alertOverlay = new AlertOverlay(this, packageName -> engine.onAlertDismissed(packageName));
         createNotificationChannel();
-        populateLauncherPackages();
-    }
-
-    private void populateLauncherPackages() {
-        PackageManager pm = getPackageManager();
-        Intent intent = new Intent(Intent.ACTION_MAIN);
-        intent.addCategory(Intent.CATEGORY_HOME);
-        List<ResolveInfo> resolveInfoList = pm.queryIntentActivities(intent, PackageManager.MATCH_DEFAULT_ONLY);
-        for (ResolveInfo resolveInfo : resolveInfoList) {
-            launcherPackages.add(resolveInfo.activityInfo.packageName);
-        }
+        UsageStatsManager usm = (UsageStatsManager) getSystemService(Context.USAGE_STATS_SERVICE);
+        foregroundAppDetector = new ForegroundAppDetector(usm,
+                UsageBuckets.getDayStart(System.currentTimeMillis()));
+        // Launchers are not tracked, so going home counts as no app in the foreground
+        engine = new UsageEngine(foregroundAppDetector, Clock.SYSTEM, limitCache, this::onLimitExceeded,
+                checkScheduler, packageIndex::isLauncher, this::seedUsage);
+        engine.setOnIntervalClosedListener(this::onUsageIntervalClosed);
+        // Read first, so detection does not wait for the package index or the limits
+        tasks.execute(TaskScheduler.Lane.TRACKING, () -> {
+            TrackingCheckpoint checkpoint = readCheckpoint();
+            handler.post(() -> startEngine(checkpoint));
+        });
+        tasks.execute(TaskScheduler.Lane.TRACKING, () -> {
+            packageIndex.ensureLoaded();
+            limitCache.load();
+            handler.post(engine::check);
+        });
+        deviceStateMonitor = new DeviceStateMonitor(this, this::onInteractiveChanged);
+        // Rolls the engine over at midnight even while parked, and when the user changes the clock
+        clockChangeMonitor = new ClockChangeMonitor(this, engine::onClockChanged);
+        clockChangeMonitor.start();
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        if (!handler.hasCallbacks(usageCheckRunnable)) {
+        String action = (intent != null) ? intent.getAction() : null;
+        if (ACTION_SPECIFIC_LIMIT_UPDATED.equals(action)) {
+            String packageName = intent.getStringExtra(EXTRA_PACKAGE_NAME);
+            if (packageName != null) {
+                // Saving the same app's limit several times in a row only reloads it once
+                tasks.execute(TaskScheduler.Lane.TRACKING, "limit:" + packageName, () -> {
+                    limitCache.refresh(packageName);
+                    handler.post(engine::check);
+                });
+            }
+        } else if (ACTION_DEFAULT_LIMIT_UPDATED.equals(action)) {
+            limitCache.refreshDefault();
+            engine.check();
+        } else if (ACTION_ALL_LIMITS_UPDATED.equals(action)) {
+            tasks.execute(TaskScheduler.Lane.TRACKING, "limits", () -> {
+                limitCache.load();
+                handler.post(engine::check);
+            });
+        }
+
+        if (!trackingStarted) {
             Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
                     .setContentTitle("App Time Tracker")
                     .setContentText("Monitoring app usage in the background.")
@@ -80,138 +140,178 @@ public class TrackingService extends Service {
                     .build();
 
             startForeground(1, notification);
-            handler.post(usageCheckRunnable);
+            trackingStarted = true;
+            startDetectionIfReady();
+        } else if (action == null && engine.isSeeded()) {
+            // Already running, e.g. the dashboard was opened again; use the chance to resync
+            reconcileUsage();
         }
         return START_STICKY;
     }
 
+    private void startEngine(@Nullable TrackingCheckpoint checkpoint) {
+        if (checkpoint != null && engine.restore(checkpoint)) {
+            // Restarted the same day: only the events since the checkpoint are read again
+            foregroundAppDetector.resumeFrom(checkpoint.eventCursor, checkpoint.sourceForegroundPackage);
+        } else {
+            seedUsage(engine.getDayStart());
+        }
+        engineStarted = true;
+        startDetectionIfReady();
+    }
+
+    // Runs once, when both the service is in the foreground and the engine is started
+    private void startDetectionIfReady() {
+        if (!trackingStarted || !engineStarted) return;
+        if (deviceStateMonitor.start()) {
+            handler.post(detectionRunnable);
+        } else {
+            if (engine.getOpenPackage() != null) {
+                // The app restored from the checkpoint may have been left while the service
+                // was gone; read when from the log, or parking would count it until now
+                engine.poll();
+            }
+            engine.park();
+        }
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
-        handler.removeCallbacks(usageCheckRunnable);
-        if (alertView != null && alertView.isAttachedToWindow()) {
-            try {
-                windowManager.removeView(alertView);
-            } catch (IllegalArgumentException e) {
-                e.printStackTrace();
-            }
+        deviceStateMonitor.stop();
+        clockChangeMonitor.stop();
+        handler.removeCallbacks(detectionRunnable);
+        engine.stop();
+        flushHistory();
+        // The flush above is already queued, so it still runs
+        tasks.shutdown();
+        alertOverlay.hide();
+    }
+
+    private void onInteractiveChanged(boolean interactive) {
+        if (interactive) {
+            resumeTracking();
+        } else {
+            parkTracking();
         }
     }
 
-    private void checkForegroundApp() {
-        String foregroundApp = getForegroundApp();
-        if (foregroundApp == null) return;
+    /**
+     * Stops all detection and checks while the screen is off, locked or in Doze,
+     * since no app can be in use then.
+     */
+    private void parkTracking() {
+        if (engine.isParked()) return;
+        engine.park();
+        handler.removeCallbacks(detectionRunnable);
+        flushHistory();
+    }
 
-        databaseExecutor.execute(() -> {
-            long usageToday = getUsageForPackage(foregroundApp);
+    private void resumeTracking() {
+        if (!engine.isParked()) return;
+        engine.resume();
+        // One catch-up with the system's numbers instead of keeping the loop running while parked
+        if (engine.isSeeded()) {
+            reconcileUsage();
+        }
+        handler.post(detectionRunnable);
+    }
 
-            AppLimit appLimit = db.appLimitDao().getLimitForApp(foregroundApp);
-            long limitMillis;
-            if (appLimit != null) {
-                limitMillis = appLimit.timeLimitMillis;
-            } else {
-                limitMillis = SettingsHelper.getDefaultLimit(this);
-            }
+    private void onUsageIntervalClosed(String packageName, long startTime, long endTime) {
+        boolean wasEmpty = usageIngestor.isEmpty();
+        usageIngestor.record(packageName, startTime, endTime);
+        if (usageIngestor.isFull()) {
+            // Posted, because taking the flush's checkpoint closes an interval again
+            handler.removeCallbacks(historyFlushRunnable);
+            handler.post(historyFlushRunnable);
+        } else if (wasEmpty && !usageIngestor.isEmpty()) {
+            // Write the buffered history in one batch a while after the first interval comes in
+            handler.postDelayed(historyFlushRunnable, HISTORY_FLUSH_INTERVAL);
+        }
+    }
 
-            if (usageToday > limitMillis) {
-                handler.post(() -> {
-                    String appName = getAppName(foregroundApp);
-                    String formattedUsage = formatUsageTime(usageToday);
-                    String formattedLimit = formatUsageTime(limitMillis);
-                    showAlert(appName, formattedUsage, formattedLimit);
-                });
-            }
-        });
+    /**
+     * Writes the buffered history and a checkpoint of the same moment in one transaction, so a
+     * restart neither loses nor repeats any of it. Taking the checkpoint cuts the running interval,
+     * which schedules the next flush; while an app stays open, a checkpoint is taken every flush interval.
+     */
+    private void flushHistory() {
+        handler.removeCallbacks(historyFlushRunnable);
+        // Nothing is recorded before, and the stored checkpoint has not been restored yet
+        if (!engineStarted) return;
+        // Null while the day is not seeded, e.g. just after midnight; an older checkpoint of today
+        // must then not be restored over the history written since, so it is dropped
+        TrackingCheckpoint checkpoint = engine.checkpoint(foregroundAppDetector.getCursor(),
+                foregroundAppDetector.getForegroundPackage());
+        usageIngestor.flush(checkpoint);
     }
 
-    private String getAppName(String packageName) {
+    // A few hundred bytes, read once before detection starts
+    @Nullable
+    private TrackingCheckpoint readCheckpoint() {
+        byte[] data = db.usageHistoryDao().getCheckpoint();
+        if (data == null) return null;
         try {
-            PackageManager pm = getPackageManager();
-            return pm.getApplicationLabel(pm.getApplicationInfo(packageName, 0)).toString();
-        } catch (PackageManager.NameNotFoundException e) {
-            return packageName;
+            return TrackingCheckpoint.fromByteArray(data);
+        } catch (IOException e) {
+            // Seeded from the system instead; the next flush replaces it
+            Log.w(TAG, "Ignoring an unreadable tracking checkpoint", e);
+            return null;
         }
     }
 
-    private String formatUsageTime(long millis) {
-        long hours = TimeUnit.MILLISECONDS.toHours(millis);
-        long minutes = TimeUnit.MILLISECONDS.toMinutes(millis) % 60;
-        if (hours > 0) {
-            return String.format("%d hr, %d min", hours, minutes);
-        } else {
-            return String.format("%d min", minutes);
-        }
+    private void onLimitExceeded(String packageName, long usageMillis, long limitMillis) {
+        String appName = packageIndex.getLabel(packageName);
+        alertOverlay.show(packageName, appName, UsageTimeFormat.hoursMinutes(usageMillis),
+                UsageTimeFormat.hoursMinutes(limitMillis));
     }
 
     @Nullable @Override public IBinder onBind(Intent intent) { return null; }
 
-    private void showAlert(String appName, String formattedUsage, String formattedLimit) {
-        if (alertView != null && alertView.isAttachedToWindow()) {
-            return;
-        }
-        alertView = LayoutInflater.from(this).inflate(R.layout.alert_view, null);
-        TextView appNameView = alertView.findViewById(R.id.text_view_app_name);
-        TextView usageView = alertView.findViewById(R.id.text_view_usage);
-        TextView thresholdView = alertView.findViewById(R.id.text_view_threshold);
-        appNameView.setText("Time Limit Reached for " + appName);
-        usageView.setText("Usage: " + formattedUsage);
-        thresholdView.setText("Limit: " + formattedLimit);
-        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
-                WindowManager.LayoutParams.MATCH_PARENT,
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
-                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE,
-                PixelFormat.TRANSLUCENT
-        );
-        Button dismissButton = alertView.findViewById(R.id.button_dismiss);
-        dismissButton.setOnClickListener(v -> {
-            if (alertView != null && alertView.isAttachedToWindow()) {
-                windowManager.removeView(alertView);
+    /**
+     * Loads the day's totals from the system once and then checks the foreground app against them.
+     * Called at start and by the engine whenever a new day begins.
+     */
+    private void seedUsage(long dayStart) {
+        tasks.execute(TaskScheduler.Lane.TRACKING, "seed", () -> {
+            long endTime = System.currentTimeMillis();
+            Map<String, Long> systemTotals = new HashMap<>();
+            for (UsageStats usageStats : queryUsageStats(dayStart, endTime)) {
+                systemTotals.putIfAbsent(usageStats.getPackageName(), usageStats.getTotalTimeInForeground());
             }
+            handler.post(() -> engine.seed(systemTotals, dayStart));
         });
-        windowManager.addView(alertView, params);
-    }
-
-    @SuppressWarnings("deprecation") // Suppress warning for the older but more reliable API
-    private String getForegroundApp() {
-        ActivityManager am = (ActivityManager) this.getSystemService(Context.ACTIVITY_SERVICE);
-        // getRunningAppProcesses() is deprecated but is the most reliable way to get the
-        // real-time foreground app for our use case.
-        List<ActivityManager.RunningAppProcessInfo> runningProcesses = am.getRunningAppProcesses();
-        if (runningProcesses != null) {
-            for (ActivityManager.RunningAppProcessInfo processInfo : runningProcesses) {
-                if (processInfo.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND) {
-                    // The processName is usually the package name for the main app process
-                    String foregroundPackage = processInfo.processName;
-
-                    // We still need to filter out our own app and any launchers
-                    if (foregroundPackage != null
-                            && !launcherPackages.contains(foregroundPackage)) {
-                        return foregroundPackage;
-                    }
+    }
+
+    /**
+     * Corrects the in-memory totals with the system's numbers, so they don't drift over the day.
+     */
+    private void reconcileUsage() {
+        long dayStart = engine.getDayStart();
+        String openPackage = engine.getOpenPackage();
+        tasks.execute(TaskScheduler.Lane.TRACKING, "reconcile", () -> {
+            long endTime = System.currentTimeMillis();
+            Map<String, Long> systemTotals = new HashMap<>();
+            long openPackageLastUsed = 0;
+            for (UsageStats usageStats : queryUsageStats(dayStart, endTime)) {
+                String packageName = usageStats.getPackageName();
+                if (systemTotals.containsKey(packageName)) continue;
+                systemTotals.put(packageName, usageStats.getTotalTimeInForeground());
+                if (packageName.equals(openPackage)) {
+                    openPackageLastUsed = usageStats.getLastTimeUsed();
                 }
             }
-        }
-        return null;
+            long lastUsed = openPackageLastUsed;
+            // Dropped by the engine if the day or the foreground app changed while the query ran
+            handler.post(() -> engine.reconcile(systemTotals, dayStart, openPackage, lastUsed));
+        });
     }
 
-    private long getUsageForPackage(String packageName) {
+    private List<UsageStats> queryUsageStats(long startTime, long endTime) {
         UsageStatsManager usm = (UsageStatsManager) getSystemService(Context.USAGE_STATS_SERVICE);
-        Calendar calendar = Calendar.getInstance();
-        calendar.set(Calendar.HOUR_OF_DAY, 0);
-        calendar.set(Calendar.MINUTE, 0);
-        calendar.set(Calendar.SECOND, 0);
-        long startTime = calendar.getTimeInMillis();
-        long endTime = System.currentTimeMillis();
+        metrics.countBinderCall();
         List<UsageStats> statsList = usm.queryUsageStats(UsageStatsManager.INTERVAL_DAILY, startTime, endTime);
-        if (statsList != null) {
-            for (UsageStats usageStats : statsList) {
-                if (usageStats.getPackageName().equals(packageName)) {
-                    return usageStats.getTotalTimeInForeground();
-                }
-            }
-        }
-        return 0;
+        return (statsList != null) ? statsList : Collections.emptyList();
     }
 
     private void createNotificationChannel() {
@@ -0,0 +1,38 @@
+package com.example.apptimetracker;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The file formats limits and history can be exported to. CSV is meant for analysis tools,
+ * the binary format for moving data between devices.
+ */
+public enum TransferFormat {
+    CSV("text/csv", "csv"),
+    BINARY("application/octet-stream", "attx");
+
+    public final String mimeType;
+    public final String extension;
+
+    TransferFormat(String mimeType, String extension) {
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    public UsageRecords.Writer newWriter(WritableByteChannel channel) throws IOException {
+        ChannelOutput out = new ChannelOutput(channel);
+        return (this == CSV) ? new CsvTransfer.Writer(out) : new BinaryTransfer.Writer(out);
+    }
+
+    /**
+     * Opens a file of either format; binary files are recognised by their header.
+     */
+    public static UsageRecords.Reader newReader(ReadableByteChannel channel) throws IOException {
+        ChannelInput in = new ChannelInput(channel);
+        if (in.skipIfNext(BinaryTransfer.MAGIC)) {
+            return new BinaryTransfer.Reader(in);
+        }
+        return new CsvTransfer.Reader(in);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.apptimetracker;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local-time boundaries of the hourly, daily and weekly usage buckets.
+ * Weeks start on Monday so they match the rollups created by the database migration.
+ */
+public final class UsageBuckets {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private UsageBuckets() {}
+
+    public static long getHourStart(long time) {
+        // Buckets follow the local clock, so zones with half-hour offsets still get whole hours
+        long offset = TimeZone.getDefault().getOffset(time);
+        return time - Math.floorMod(time + offset, HOUR);
+    }
+
+    public static long getDayStart(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    public static long getWeekStart(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(getDayStart(time));
+        int daysSinceMonday = (calendar.get(Calendar.DAY_OF_WEEK) - Calendar.MONDAY + 7) % 7;
+        calendar.add(Calendar.DAY_OF_YEAR, -daysSinceMonday);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * @return The start of the day {@code days} days after {@code dayStart}; negative goes back.
+     */
+    public static long addDays(long dayStart, int days) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(dayStart);
+        calendar.add(Calendar.DAY_OF_YEAR, days);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.apptimetracker;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import java.util.Set;
+
+/**
+ * Tells the dashboard when the limits or the usage history change, through Room's
+ * {@link InvalidationTracker}, so it reloads when something was written instead of on every resume.
+ * A burst of writes, e.g. a history flush or an import, is delivered as one change at most
+ * {@link #DEBOUNCE} after the first of them. While paused, changes are only remembered.
+ * All methods must be called on the main thread.
+ */
+public class UsageDataObserver {
+    static final long DEBOUNCE = 500;
+
+    private final InvalidationTracker invalidationTracker;
+    private final Runnable listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean changed;
+    private boolean paused = true;
+    private boolean started;
+
+    // Called on one of Room's threads
+    private final InvalidationTracker.Observer observer = new InvalidationTracker.Observer(
+            "app_limits", "hourly_usage", "daily_usage", "weekly_usage") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            handler.post(UsageDataObserver.this::notifyChanged);
+        }
+    };
+
+    private final Runnable deliverRunnable = () -> {
+        changed = false;
+        listener.run();
+    };
+
+    public UsageDataObserver(AppDatabase db, Runnable listener) {
+        this.invalidationTracker = db.getInvalidationTracker();
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (started) return;
+        invalidationTracker.addObserver(observer);
+        started = true;
+    }
+
+    public void stop() {
+        if (!started) return;
+        invalidationTracker.removeObserver(observer);
+        handler.removeCallbacks(deliverRunnable);
+        started = false;
+    }
+
+    public void pause() {
+        paused = true;
+        handler.removeCallbacks(deliverRunnable);
+    }
+
+    /**
+     * Delivers changes again from now on.
+     * @return Whether anything changed while paused; the caller reloads itself in that case.
+     */
+    public boolean resume() {
+        paused = false;
+        boolean changedWhilePaused = changed;
+        changed = false;
+        return changedWhilePaused;
+    }
+
+    /**
+     * Reports a change Room cannot see, e.g. of the default limit in the shared preferences.
+     */
+    public void notifyChanged() {
+        // Later changes in the same window ride along with the first one
+        if (changed && !paused) return;
+        changed = true;
+        if (!paused) {
+            handler.postDelayed(deliverRunnable, DEBOUNCE);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.apptimetracker;
+
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+/**
+ * The limit logic of {@link TrackingService} without any Android dependency.
+ * It follows the foreground app, keeps today's usage, decides when an app is over its limit
+ * and when the next check is due. Everything it needs from the outside comes through
+ * {@link UsageEventSource}, {@link Clock}, {@link LimitStore}, {@link AlertSink} and
+ * {@link CheckScheduler}, so it can run on a plain JVM and on simulated time.
+ * Not thread safe; all calls must come from one thread.
+ */
+public class UsageEngine implements UsageEventSource.Listener {
+    // How long an app stays quiet after its alert is dismissed
+    static final long ALERT_SNOOZE = TimeUnit.MINUTES.toMillis(5);
+    static final long DEADLINE_MARGIN = TimeUnit.SECONDS.toMillis(1);
+    // One check in this many records its timings; a power of two
+    static final int CHECK_SAMPLE_INTERVAL = 64;
+
+    private final UsageEventSource eventSource;
+    private final Clock clock;
+    private final LimitStore limitStore;
+    private final AlertSink alertSink;
+    private final CheckScheduler checkScheduler;
+    // Packages that are never tracked, e.g. launchers
+    private final Predicate<String> ignoredPackages;
+    private final LongConsumer onNewDay;
+    private final DailyUsageAccumulator usageAccumulator = new DailyUsageAccumulator();
+    private final TrackingMetrics metrics = TrackingMetrics.getInstance();
+    private final AlertStates alertStates = new AlertStates(ALERT_SNOOZE);
+    private final DayWindow dayWindow;
+
+    private String foregroundApp;
+    private boolean usageSeeded;
+    private boolean parked;
+    // Events from before this time are not counted, because they happened while tracking was
+    // parked or belong to the previous day
+    private long countFrom;
+    // Time spent in checks triggered from inside the current poll, so detection is timed on its own
+    private long checkNanosInPoll;
+    private boolean polling;
+    private int checkCount;
+
+    /**
+     * @param onNewDay Called with the start of the new day when the day rolls over; the host is
+     *                 expected to call {@link #seed} with that day's totals.
+     */
+    public UsageEngine(UsageEventSource eventSource, Clock clock, LimitStore limitStore,
+                       AlertSink alertSink, CheckScheduler checkScheduler,
+                       Predicate<String> ignoredPackages, LongConsumer onNewDay) {
+        this.eventSource = eventSource;
+        this.clock = clock;
+        this.limitStore = limitStore;
+        this.alertSink = alertSink;
+        this.checkScheduler = checkScheduler;
+        this.ignoredPackages = ignoredPackages;
+        this.onNewDay = onNewDay;
+        this.dayWindow = new DayWindow(clock.now());
+    }
+
+    public void setOnIntervalClosedListener(DailyUsageAccumulator.OnIntervalClosedListener listener) {
+        usageAccumulator.setOnIntervalClosedListener(listener);
+    }
+
+    /**
+     * Reads new events from the event source; a foreground change triggers a check.
+     */
+    public void poll() {
+        if (parked) return;
+        long start = System.nanoTime();
+        checkNanosInPoll = 0;
+        long now = clock.now();
+        if (!dayWindow.contains(now)) {
+            rollOver(now);
+        }
+        polling = true;
+        try {
+            eventSource.poll(now, this);
+        } finally {
+            polling = false;
+        }
+        metrics.record(TrackingMetrics.Stage.DETECTION, System.nanoTime() - start - checkNanosInPoll);
+    }
+
+    @Override
+    public void onForegroundAppChanged(String packageName, long timestamp) {
+        if (packageName != null && ignoredPackages.test(packageName)) {
+            packageName = null;
+        }
+        if (Objects.equals(packageName, foregroundApp)) return;
+        foregroundApp = packageName;
+        usageAccumulator.onForegroundChanged(packageName, Math.max(timestamp, countFrom));
+        check();
+    }
+
+    /**
+     * Starts the day with the given totals and checks the foreground app against them.
+     * @param dayStart The start of the day the totals were read for; if the day has rolled
+     *                 over since, they are dropped.
+     */
+    public void seed(Map<String, Long> totals, long dayStart) {
+        if (dayStart != dayWindow.getStart()) return;
+        alertStates.clear();
+        usageAccumulator.seed(totals, clock.now());
+        usageSeeded = true;
+        check();
+    }
+
+    /**
+     * Corrects the totals with the system's numbers.
+     * @param dayStart The start of the day the numbers were read for.
+     * @param openPackage The foreground app when the numbers were read; if it has changed
+     *                    since, the numbers are dropped.
+     * @param openPackageLastUsed When the system last counted {@code openPackage}.
+     */
+    public void reconcile(Map<String, Long> totals, long dayStart, String openPackage,
+                          long openPackageLastUsed) {
+        if (dayStart != dayWindow.getStart()) return;
+        if (!Objects.equals(openPackage, usageAccumulator.getOpenPackage())) return;
+        usageAccumulator.reconcile(totals, openPackageLastUsed);
+        check();
+    }
+
+    /**
+     * Cuts the running usage interval at the current time, so everything up to now is counted
+     * and reported to the interval listener, and returns the state to resume from after a restart.
+     * @param eventCursor How far the event source has read.
+     * @param sourceForegroundPackage The foreground app as the event source sees it.
+     * @return Null if the day's totals are not seeded yet; there is nothing to resume then.
+     */
+    @Nullable
+    public TrackingCheckpoint checkpoint(long eventCursor, @Nullable String sourceForegroundPackage) {
+        if (!usageSeeded) return null;
+        long now = clock.now();
+        String openPackage = usageAccumulator.getOpenPackage();
+        if (openPackage != null) {
+            usageAccumulator.onForegroundChanged(openPackage, now);
+        }
+        return new TrackingCheckpoint(dayWindow.getStart(), now, eventCursor, sourceForegroundPackage,
+                foregroundApp, usageAccumulator.getTotals(), alertStates.getQuietTimes());
+    }
+
+    /**
+     * Starts from a checkpoint instead of seeding, so only the events since it have to be read.
+     * The foreground app is counted from when the checkpoint was taken; if it changed while the
+     * host was gone, the replayed events close that interval at the right time.
+     * @return Whether the checkpoint was used; one from another day is not.
+     */
+    public boolean restore(TrackingCheckpoint checkpoint) {
+        if (checkpoint.dayStart != dayWindow.getStart()) return false;
+        alertStates.restore(checkpoint.alertQuietTimes, clock.now());
+        usageAccumulator.seed(checkpoint.totals, checkpoint.savedAt);
+        foregroundApp = checkpoint.foregroundPackage;
+        usageAccumulator.onForegroundChanged(foregroundApp, checkpoint.savedAt);
+        // Everything before the checkpoint is already in its totals
+        countFrom = checkpoint.savedAt;
+        usageSeeded = true;
+        check();
+        return true;
+    }
+
+    /**
+     * Stops checks while no app can be in use and closes the running usage interval.
+     */
+    public void park() {
+        if (parked) return;
+        parked = true;
+        checkScheduler.cancel();
+        foregroundApp = null;
+        eventSource.clearForeground();
+        usageAccumulator.onForegroundChanged(null, clock.now());
+    }
+
+    public void resume() {
+        if (!parked) return;
+        parked = false;
+        countFrom = clock.now();
+    }
+
+    /**
+     * Called when the date, the clock or the time zone was changed. Rolls over to a new day if
+     * the current one no longer has the same boundaries, so usage keeps following the local day.
+     */
+    public void onClockChanged() {
+        rollOver(clock.now());
+    }
+
+    /**
+     * Closes the running usage interval, e.g. before the host shuts down.
+     */
+    public void stop() {
+        checkScheduler.cancel();
+        usageAccumulator.onForegroundChanged(null, clock.now());
+    }
+
+    /**
+     * Checks the foreground app against its limit and schedules the next check for the moment
+     * it will cross it. Called again whenever the foreground app or a limit changes.
+     * Only one check in {@link #CHECK_SAMPLE_INTERVAL} records its timings, since the timer costs
+     * about as much as the check. A check inside a poll is always timed, so the poll can leave it
+     * out of the detection time; next to the poll's binder call that costs next to nothing.
+     */
+    public void check() {
+        checkScheduler.cancel();
+        String foregroundApp = this.foregroundApp;
+        if (parked || foregroundApp == null || !usageSeeded || !limitStore.isLoaded()) return;
+
+        long now = clock.now();
+        if (!dayWindow.contains(now)) {
+            rollOver(now);
+            return;
+        }
+        if ((++checkCount & (CHECK_SAMPLE_INTERVAL - 1)) == 0) {
+            timedCheck(foregroundApp, now);
+        } else if (polling) {
+            long start = System.nanoTime();
+            checkLimit(foregroundApp, now, usageAccumulator.getUsage(foregroundApp, now),
+                    limitStore.getLimit(foregroundApp));
+            checkNanosInPoll += System.nanoTime() - start;
+        } else {
+            checkLimit(foregroundApp, now, usageAccumulator.getUsage(foregroundApp, now),
+                    limitStore.getLimit(foregroundApp));
+        }
+    }
+
+    // A check that records its stages; kept apart so the untimed path stays small
+    private void timedCheck(String foregroundApp, long now) {
+        long start = System.nanoTime();
+        long usageToday = usageAccumulator.getUsage(foregroundApp, now);
+        long usageLookedUp = System.nanoTime();
+        long limitMillis = limitStore.getLimit(foregroundApp);
+        long limitLookedUp = System.nanoTime();
+        checkLimit(foregroundApp, now, usageToday, limitMillis);
+        long checkNanos = System.nanoTime() - start;
+        checkNanosInPoll += checkNanos;
+        metrics.record(TrackingMetrics.Stage.USAGE_LOOKUP, usageLookedUp - start);
+        metrics.record(TrackingMetrics.Stage.LIMIT_LOOKUP, limitLookedUp - usageLookedUp);
+        metrics.record(TrackingMetrics.Stage.CHECK, checkNanos);
+    }
+
+    private void checkLimit(String foregroundApp, long now, long usageToday, long limitMillis) {
+        if (usageToday > limitMillis) {
+            long quietUntil = alertStates.quietUntil(foregroundApp);
+            if (quietUntil <= now) {
+                alertSink.showAlert(foregroundApp, usageToday, limitMillis);
+                alertStates.onNotified(foregroundApp, now);
+                // Nothing to do until the alert is dismissed, apart from ending the day
+                scheduleNextCheck(Long.MAX_VALUE, now);
+            } else {
+                // Already handled; look again when the snooze ends (or at the end of the day)
+                scheduleNextCheck(quietUntil - now, now);
+            }
+        } else {
+            scheduleNextCheck(limitMillis - usageToday + DEADLINE_MARGIN, now);
+        }
+    }
+
+    /**
+     * Called when the user dismisses the alert of an app; it stays quiet for {@link #ALERT_SNOOZE}.
+     */
+    public void onAlertDismissed(String packageName) {
+        alertStates.onDismissed(packageName, clock.now());
+        check();
+    }
+
+    public AlertStates.State getAlertState(String packageName) {
+        return alertStates.getState(packageName);
+    }
+
+    public boolean isParked() {
+        return parked;
+    }
+
+    public long getDayStart() {
+        return dayWindow.getStart();
+    }
+
+    public boolean isSeeded() {
+        return usageSeeded;
+    }
+
+    public String getOpenPackage() {
+        return usageAccumulator.getOpenPackage();
+    }
+
+    public long getUsage(String packageName) {
+        return usageAccumulator.getUsage(packageName, clock.now());
+    }
+
+    /**
+     * Moves to the day that contains {@code now} and drops all state of the previous one in one
+     * step, so nothing can see a mix of both days. Only the first call per day does anything.
+     */
+    private void rollOver(long now) {
+        if (!dayWindow.update(now)) return;
+        long dayStart = dayWindow.getStart();
+        checkScheduler.cancel();
+        usageAccumulator.startNewDay(dayStart);
+        alertStates.clear();
+        // Late events from before midnight must not be counted into the new day
+        countFrom = dayStart;
+        usageSeeded = false;
+        onNewDay.accept(dayStart);
+    }
+
+    private void scheduleNextCheck(long delayMillis, long now) {
+        // Usage is reset at midnight, so never sleep past the end of the day
+        long delay = Math.min(delayMillis, dayWindow.getEnd() - now);
+        checkScheduler.schedule(Math.max(delay, 0));
+    }
+}
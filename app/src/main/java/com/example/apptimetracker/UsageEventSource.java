@@ -0,0 +1,27 @@
+package com.example.apptimetracker;
+
+/**
+ * Where {@link UsageEngine} learns about foreground changes. On a device this is the
+ * usage event log ({@link ForegroundAppDetector}); in tests it is a scripted or synthetic feed.
+ */
+public interface UsageEventSource {
+
+    interface Listener {
+        /**
+         * Called when a different app comes to the foreground.
+         * @param packageName The new foreground package, or null if no activity is resumed.
+         * @param timestamp The time of the event that caused the change.
+         */
+        void onForegroundAppChanged(String packageName, long timestamp);
+    }
+
+    /**
+     * Reports the foreground changes that happened up to {@code now} and were not reported yet.
+     */
+    void poll(long now, Listener listener);
+
+    /**
+     * Forgets the current foreground app, so the next resume of any app is reported as a change.
+     */
+    void clearForeground();
+}
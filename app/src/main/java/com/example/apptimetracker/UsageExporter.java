@@ -0,0 +1,72 @@
+package com.example.apptimetracker;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes the limits and the whole usage history, hours, days and weeks, to a file, straight
+ * from database cursors.
+ * Rows are encoded one at a time into a fixed buffer, so memory use stays the same however
+ * long the history is. Must not be called on the main thread.
+ */
+public class UsageExporter {
+    private final Context context;
+    private final AppDatabase db;
+
+    public UsageExporter(Context context) {
+        this.context = context.getApplicationContext();
+        this.db = AppDatabase.getDatabase(context);
+    }
+
+    /**
+     * @return How many records were written.
+     */
+    public long export(WritableByteChannel channel, TransferFormat format) throws IOException {
+        UsageRecords.Writer writer = format.newWriter(channel);
+        writer.writeDefaultLimit(SettingsHelper.getDefaultLimit(context));
+
+        try (Cursor cursor = db.appLimitDao().streamAllLimits()) {
+            int packageColumn = cursor.getColumnIndexOrThrow("package_name");
+            int limitColumn = cursor.getColumnIndexOrThrow("time_limit_millis");
+            while (cursor.moveToNext()) {
+                writer.writeLimit(cursor.getString(packageColumn), cursor.getLong(limitColumn));
+            }
+        }
+
+        UsageHistoryDao dao = db.usageHistoryDao();
+        try (Cursor cursor = dao.streamHourlyUsage()) {
+            int packageColumn = cursor.getColumnIndexOrThrow("package_name");
+            int hourColumn = cursor.getColumnIndexOrThrow("hour_start");
+            int usageColumn = cursor.getColumnIndexOrThrow("usage_millis");
+            while (cursor.moveToNext()) {
+                writer.writeHour(cursor.getString(packageColumn), cursor.getLong(hourColumn),
+                        cursor.getLong(usageColumn));
+            }
+        }
+
+        // The rollups also hold the history that maintenance has dropped from the finer tables
+        try (Cursor cursor = dao.streamDailyUsage()) {
+            int packageColumn = cursor.getColumnIndexOrThrow("package_name");
+            int dayColumn = cursor.getColumnIndexOrThrow("day_start");
+            int usageColumn = cursor.getColumnIndexOrThrow("usage_millis");
+            while (cursor.moveToNext()) {
+                writer.writeDay(cursor.getString(packageColumn), cursor.getLong(dayColumn),
+                        cursor.getLong(usageColumn));
+            }
+        }
+
+        try (Cursor cursor = dao.streamWeeklyUsage()) {
+            int packageColumn = cursor.getColumnIndexOrThrow("package_name");
+            int weekColumn = cursor.getColumnIndexOrThrow("week_start");
+            int usageColumn = cursor.getColumnIndexOrThrow("usage_millis");
+            while (cursor.moveToNext()) {
+                writer.writeWeek(cursor.getString(packageColumn), cursor.getLong(weekColumn),
+                        cursor.getLong(usageColumn));
+            }
+        }
+        return writer.finish();
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.apptimetracker;
+
+import android.database.Cursor;
+
+import androidx.annotation.Nullable;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+@Dao
+public interface UsageHistoryDao {
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertIfAbsent(HourlyUsage hourlyUsage);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertIfAbsent(DailyUsage dailyUsage);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertIfAbsent(WeeklyUsage weeklyUsage);
+
+    @Query("UPDATE hourly_usage SET usage_millis = usage_millis + :millis " +
+            "WHERE package_name = :packageName AND hour_start = :hourStart")
+    void addUsage(String packageName, long hourStart, long millis);
+
+    @Query("UPDATE daily_usage SET usage_millis = usage_millis + :millis " +
+            "WHERE package_name = :packageName AND day_start = :dayStart")
+    void addDailyUsage(String packageName, long dayStart, long millis);
+
+    @Query("UPDATE weekly_usage SET usage_millis = usage_millis + :millis " +
+            "WHERE package_name = :packageName AND week_start = :weekStart")
+    void addWeeklyUsage(String packageName, long weekStart, long millis);
+
+    /**
+     * Adds a batch of usage deltas to their hourly buckets and to the daily and weekly rollups,
+     * all in a single transaction.
+     */
+    @Transaction
+    default void addAll(Collection<HourlyUsage> deltas) {
+        for (HourlyUsage delta : deltas) {
+            // Insert returns -1 when the bucket already exists
+            if (insertIfAbsent(delta) == -1) {
+                addUsage(delta.packageName, delta.hourStart, delta.usageMillis);
+            }
+        }
+        addToRollups(deltas);
+    }
+
+    /**
+     * Adds a batch like {@link #addAll(Collection)} and replaces the tracking checkpoint in the same
+     * transaction, so the stored checkpoint always matches the history on disk.
+     * @param checkpoint The serialized {@link TrackingCheckpoint}, or null to drop the stored one.
+     */
+    @Transaction
+    default void addAll(Collection<HourlyUsage> deltas, @Nullable byte[] checkpoint) {
+        addAll(deltas);
+        if (checkpoint != null) {
+            SavedCheckpoint saved = new SavedCheckpoint();
+            saved.data = checkpoint;
+            putCheckpoint(saved);
+        } else {
+            deleteCheckpoint();
+        }
+    }
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void putCheckpoint(SavedCheckpoint checkpoint);
+
+    @Query("DELETE FROM tracking_checkpoint")
+    void deleteCheckpoint();
+
+    @Nullable
+    @Query("SELECT data FROM tracking_checkpoint WHERE id = " + SavedCheckpoint.ID)
+    byte[] getCheckpoint();
+
+    /**
+     * Adds hourly deltas to the daily and weekly rollups. Must run inside the caller's transaction.
+     */
+    default void addToRollups(Collection<HourlyUsage> deltas) {
+        HashMap<String, DailyUsage> dailyDeltas = new HashMap<>();
+        HashMap<String, WeeklyUsage> weeklyDeltas = new HashMap<>();
+        for (HourlyUsage delta : deltas) {
+            long dayStart = UsageBuckets.getDayStart(delta.hourStart);
+            DailyUsage daily = dailyDeltas.get(delta.packageName + '@' + dayStart);
+            if (daily == null) {
+                daily = new DailyUsage();
+                daily.packageName = delta.packageName;
+                daily.dayStart = dayStart;
+                dailyDeltas.put(delta.packageName + '@' + dayStart, daily);
+            }
+            daily.usageMillis += delta.usageMillis;
+
+            long weekStart = UsageBuckets.getWeekStart(dayStart);
+            WeeklyUsage weekly = weeklyDeltas.get(delta.packageName + '@' + weekStart);
+            if (weekly == null) {
+                weekly = new WeeklyUsage();
+                weekly.packageName = delta.packageName;
+                weekly.weekStart = weekStart;
+                weeklyDeltas.put(delta.packageName + '@' + weekStart, weekly);
+            }
+            weekly.usageMillis += delta.usageMillis;
+        }
+
+        for (DailyUsage daily : dailyDeltas.values()) {
+            if (insertIfAbsent(daily) == -1) {
+                addDailyUsage(daily.packageName, daily.dayStart, daily.usageMillis);
+            }
+        }
+        for (WeeklyUsage weekly : weeklyDeltas.values()) {
+            if (insertIfAbsent(weekly) == -1) {
+                addWeeklyUsage(weekly.packageName, weekly.weekStart, weekly.usageMillis);
+            }
+        }
+    }
+
+    // Deletes go by rowid in chunks so each one is a short transaction; see UsageMaintenance
+    @Query("DELETE FROM hourly_usage WHERE rowid IN "
+            + "(SELECT rowid FROM hourly_usage WHERE hour_start < :before LIMIT :limit)")
+    int deleteHoursBefore(long before, int limit);
+
+    @Query("DELETE FROM daily_usage WHERE rowid IN "
+            + "(SELECT rowid FROM daily_usage WHERE day_start < :before LIMIT :limit)")
+    int deleteDaysBefore(long before, int limit);
+
+    @Query("DELETE FROM weekly_usage WHERE rowid IN "
+            + "(SELECT rowid FROM weekly_usage WHERE week_start < :before LIMIT :limit)")
+    int deleteWeeksBefore(long before, int limit);
+
+    /**
+     * Stream the whole history of one table in time order. The caller must close the cursor.
+     */
+    @Query("SELECT * FROM hourly_usage ORDER BY hour_start")
+    Cursor streamHourlyUsage();
+
+    @Query("SELECT * FROM daily_usage ORDER BY day_start")
+    Cursor streamDailyUsage();
+
+    @Query("SELECT * FROM weekly_usage ORDER BY week_start")
+    Cursor streamWeeklyUsage();
+
+    @Query("SELECT * FROM hourly_usage WHERE hour_start >= :startTime AND hour_start < :endTime")
+    List<HourlyUsage> getUsageBetween(long startTime, long endTime);
+
+    @Query("SELECT package_name, SUM(usage_millis) AS usage_millis FROM daily_usage " +
+            "WHERE day_start >= :startTime AND day_start < :endTime GROUP BY package_name")
+    List<PackageUsageTotal> getDailyTotalsBetween(long startTime, long endTime);
+
+    @Query("SELECT package_name, SUM(usage_millis) AS usage_millis FROM weekly_usage " +
+            "WHERE week_start >= :startTime AND week_start < :endTime GROUP BY package_name")
+    List<PackageUsageTotal> getWeeklyTotalsBetween(long startTime, long endTime);
+}
@@ -0,0 +1,235 @@
+package com.example.apptimetracker;
+
+import android.content.Context;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Reads a file written by {@link UsageExporter}, in either format, while it streams in.
+ * Records are written in transactions of {@link #BATCH_SIZE}, so only one batch is ever held
+ * in memory. Limits from the file replace the current ones. Usage is merged by row: an hour,
+ * day or week that does not exist here yet is inserted as it is in the file, including what the
+ * file has in its finer rows, and an existing day or week gets the time of the hours or days the
+ * import added below it. So importing the same file again changes nothing, and another device's
+ * history is kept back to the oldest week it has.
+ * <p>
+ * Hours and days that {@link UsageMaintenance} has already dropped here may be this device's own,
+ * and so already counted in the rollups; they are inserted, but not added to an existing rollup
+ * again. If the file turns out to be broken, the batches before the bad record stay imported.
+ * Must not be called on the main thread.
+ */
+public class UsageImporter {
+    static final int BATCH_SIZE = 1000;
+
+    public static class Result {
+        public long limits;
+        public long hoursRead;
+        public long hoursAdded;
+        public long daysRead;
+        public long daysAdded;
+        public long weeksRead;
+        public long weeksAdded;
+    }
+
+    private final Context context;
+    private final AppDatabase db;
+
+    public UsageImporter(Context context) {
+        this.context = context.getApplicationContext();
+        this.db = AppDatabase.getDatabase(context);
+    }
+
+    public Result importFrom(ReadableByteChannel channel) throws IOException {
+        Import run = new Import();
+        TransferFormat.newReader(channel).read(run);
+        run.finish();
+        return run.result;
+    }
+
+    // The state of one import. The file has all hours before the days and all days before the
+    // weeks, so each batch is written before the first record of the next kind arrives.
+    private final class Import implements UsageRecords.Listener {
+        final Result result = new Result();
+        final UsageHistoryDao dao = db.usageHistoryDao();
+        final long hoursCompactedBefore = SettingsHelper.getHoursCompactedBefore(context);
+        final long daysCompactedBefore = SettingsHelper.getDaysCompactedBefore(context);
+        final ArrayList<AppLimit> limitBatch = new ArrayList<>();
+        final ArrayList<HourlyUsage> hourBatch = new ArrayList<>();
+        final ArrayList<DailyUsage> dayBatch = new ArrayList<>();
+        final ArrayList<WeeklyUsage> weekBatch = new ArrayList<>();
+        // Time the import added below a day or week, to add to it if it already exists. Keyed by
+        // "package@start" like the rollups in UsageHistoryDao; holds at most the file's hourly
+        // and daily window.
+        final HashMap<String, DailyUsage> dayMerges = new HashMap<>();
+        final HashMap<String, WeeklyUsage> weekMerges = new HashMap<>();
+
+        @Override
+        public void onDefaultLimit(long limitMillis) {
+            SettingsHelper.setDefaultLimit(context, limitMillis);
+        }
+
+        @Override
+        public void onLimit(String packageName, long limitMillis) {
+            AppLimit limit = new AppLimit();
+            limit.packageName = packageName;
+            limit.timeLimitMillis = limitMillis;
+            limitBatch.add(limit);
+            if (limitBatch.size() >= BATCH_SIZE) {
+                flushLimits();
+            }
+        }
+
+        @Override
+        public void onHour(String packageName, long hourStart, long usageMillis) {
+            result.hoursRead++;
+            HourlyUsage hour = new HourlyUsage();
+            hour.packageName = packageName;
+            hour.hourStart = hourStart;
+            hour.usageMillis = usageMillis;
+            hourBatch.add(hour);
+            if (hourBatch.size() >= BATCH_SIZE) {
+                flushHours();
+            }
+        }
+
+        @Override
+        public void onDay(String packageName, long dayStart, long usageMillis) {
+            flushHours();
+            result.daysRead++;
+            DailyUsage day = new DailyUsage();
+            day.packageName = packageName;
+            day.dayStart = dayStart;
+            day.usageMillis = usageMillis;
+            dayBatch.add(day);
+            if (dayBatch.size() >= BATCH_SIZE) {
+                flushDays();
+            }
+        }
+
+        @Override
+        public void onWeek(String packageName, long weekStart, long usageMillis) {
+            flushDays();
+            result.weeksRead++;
+            WeeklyUsage week = new WeeklyUsage();
+            week.packageName = packageName;
+            week.weekStart = weekStart;
+            week.usageMillis = usageMillis;
+            weekBatch.add(week);
+            if (weekBatch.size() >= BATCH_SIZE) {
+                flushWeeks();
+            }
+        }
+
+        void finish() {
+            flushLimits();
+            flushHours();
+            flushDays();
+            flushWeeks();
+            // Files from before days and weeks were exported only have hours; what they added
+            // goes into the rollups directly
+            if (dayMerges.isEmpty() && weekMerges.isEmpty()) return;
+            db.runInTransaction(() -> {
+                for (DailyUsage merge : dayMerges.values()) {
+                    if (dao.insertIfAbsent(merge) == -1) {
+                        dao.addDailyUsage(merge.packageName, merge.dayStart, merge.usageMillis);
+                    }
+                    mergeIntoWeek(merge.packageName, merge.dayStart, merge.usageMillis);
+                }
+                for (WeeklyUsage merge : weekMerges.values()) {
+                    if (dao.insertIfAbsent(merge) == -1) {
+                        dao.addWeeklyUsage(merge.packageName, merge.weekStart, merge.usageMillis);
+                    }
+                }
+            });
+        }
+
+        private void flushLimits() {
+            if (limitBatch.isEmpty()) return;
+            db.appLimitDao().insertAll(limitBatch);
+            result.limits += limitBatch.size();
+            limitBatch.clear();
+        }
+
+        private void flushHours() {
+            if (hourBatch.isEmpty()) return;
+            db.runInTransaction(() -> {
+                for (HourlyUsage hour : hourBatch) {
+                    // Insert returns -1 when the hour already exists
+                    if (dao.insertIfAbsent(hour) == -1) continue;
+                    result.hoursAdded++;
+                    if (hour.hourStart >= hoursCompactedBefore) {
+                        mergeIntoDay(hour.packageName, UsageBuckets.getDayStart(hour.hourStart), hour.usageMillis);
+                    }
+                }
+            });
+            hourBatch.clear();
+        }
+
+        private void flushDays() {
+            if (dayBatch.isEmpty()) return;
+            db.runInTransaction(() -> {
+                for (DailyUsage day : dayBatch) {
+                    DailyUsage merge = dayMerges.remove(day.packageName + '@' + day.dayStart);
+                    long added;
+                    if (dao.insertIfAbsent(day) != -1) {
+                        // Already includes the file's hours of that day
+                        result.daysAdded++;
+                        added = day.usageMillis;
+                    } else if (merge != null) {
+                        dao.addDailyUsage(day.packageName, day.dayStart, merge.usageMillis);
+                        added = merge.usageMillis;
+                    } else {
+                        continue;
+                    }
+                    if (day.dayStart >= daysCompactedBefore) {
+                        mergeIntoWeek(day.packageName, day.dayStart, added);
+                    }
+                }
+            });
+            dayBatch.clear();
+        }
+
+        private void flushWeeks() {
+            if (weekBatch.isEmpty()) return;
+            db.runInTransaction(() -> {
+                for (WeeklyUsage week : weekBatch) {
+                    WeeklyUsage merge = weekMerges.remove(week.packageName + '@' + week.weekStart);
+                    if (dao.insertIfAbsent(week) != -1) {
+                        result.weeksAdded++;
+                    } else if (merge != null) {
+                        dao.addWeeklyUsage(week.packageName, week.weekStart, merge.usageMillis);
+                    }
+                }
+            });
+            weekBatch.clear();
+        }
+
+        private void mergeIntoDay(String packageName, long dayStart, long millis) {
+            String key = packageName + '@' + dayStart;
+            DailyUsage merge = dayMerges.get(key);
+            if (merge == null) {
+                merge = new DailyUsage();
+                merge.packageName = packageName;
+                merge.dayStart = dayStart;
+                dayMerges.put(key, merge);
+            }
+            merge.usageMillis += millis;
+        }
+
+        private void mergeIntoWeek(String packageName, long dayStart, long millis) {
+            long weekStart = UsageBuckets.getWeekStart(dayStart);
+            String key = packageName + '@' + weekStart;
+            WeeklyUsage merge = weekMerges.get(key);
+            if (merge == null) {
+                merge = new WeeklyUsage();
+                merge.packageName = packageName;
+                merge.weekStart = weekStart;
+                weekMerges.put(key, merge);
+            }
+            merge.usageMillis += millis;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.apptimetracker;
+
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers finished foreground intervals as per-package hourly deltas and writes them to
+ * {@code hourly_usage} (and its rollups) in batches, instead of one database write per app switch.
+ * Not thread safe; the service only uses it from the main thread.
+ */
+public class UsageIngestor {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    // The host should flush early once this many different package/hour buckets are waiting
+    private static final int MAX_BUFFERED = 64;
+
+    private final UsageHistoryDao usageHistoryDao;
+    private final Executor databaseExecutor;
+    private HashMap<String, HourlyUsage> buffer = new HashMap<>();
+
+    public UsageIngestor(UsageHistoryDao usageHistoryDao, Executor databaseExecutor) {
+        this.usageHistoryDao = usageHistoryDao;
+        this.databaseExecutor = databaseExecutor;
+    }
+
+    /**
+     * Adds a finished foreground interval, split at local hour boundaries.
+     */
+    public void record(String packageName, long startTime, long endTime) {
+        long start = startTime;
+        while (start < endTime) {
+            long hourStart = UsageBuckets.getHourStart(start);
+            long end = Math.min(endTime, hourStart + HOUR);
+            add(packageName, hourStart, end - start);
+            start = end;
+        }
+    }
+
+    public boolean isEmpty() {
+        return buffer.isEmpty();
+    }
+
+    /**
+     * @return Whether enough is buffered that the host should flush now rather than on its timer.
+     */
+    public boolean isFull() {
+        return buffer.size() >= MAX_BUFFERED;
+    }
+
+    /**
+     * Writes everything buffered so far and the checkpoint taken at the same moment in one
+     * transaction on the database executor, so a restart never replays history that is already
+     * written nor misses any that is not.
+     * @param checkpoint Null to drop the stored checkpoint, e.g. while the day is not seeded.
+     */
+    public void flush(@Nullable TrackingCheckpoint checkpoint) {
+        Collection<HourlyUsage> batch = buffer.values();
+        buffer = new HashMap<>();
+        databaseExecutor.execute(() -> {
+            TrackingMetrics.getInstance().countDatabaseQuery();
+            usageHistoryDao.addAll(batch, (checkpoint != null) ? checkpoint.toByteArray() : null);
+        });
+    }
+
+    private void add(String packageName, long hourStart, long millis) {
+        String key = packageName + '@' + hourStart;
+        HourlyUsage delta = buffer.get(key);
+        if (delta == null) {
+            delta = new HourlyUsage();
+            delta.packageName = packageName;
+            delta.hourStart = hourStart;
+            buffer.put(key, delta);
+        }
+        delta.usageMillis += millis;
+    }
+}
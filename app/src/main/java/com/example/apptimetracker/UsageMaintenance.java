@@ -0,0 +1,121 @@
+package com.example.apptimetracker;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Keeps the usage history from growing without limit. Hours are only kept for a month and days
+ * for as long as the dashboard reads them; both are already counted in the coarser rollups,
+ * so dropping them loses no totals. Everything older than the retention window is deleted.
+ * Afterwards the freed pages are given back to the file system and the WAL is checkpointed.
+ * <p>
+ * The work is split into chunks that each take one short transaction, so the tracking service's
+ * history writes never wait long for the database. Not thread safe; call {@link #runChunk()}
+ * from one thread at a time.
+ */
+public class UsageMaintenance {
+    // Hourly detail is not read by any range; exports carry the days and weeks for older history
+    private static final int HOURLY_DAYS = 31;
+    private static final int CHUNK_ROWS = 500;
+    private static final int VACUUM_PAGES = 256;
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private enum Step { HOURS, DAYS, WEEKS, VACUUM, CHECKPOINT, DONE }
+
+    private final Context context;
+    private final AppDatabase db;
+    private final long hourCutoff;
+    private final long dayCutoff;
+    private final long weekCutoff;
+    private Step step = Step.HOURS;
+    private long rowsDeleted;
+
+    public UsageMaintenance(Context context, long now) {
+        this.context = context.getApplicationContext();
+        this.db = AppDatabase.getDatabase(context);
+        long today = UsageBuckets.getDayStart(now);
+        int retentionDays = SettingsHelper.getRetentionDays(context);
+        long retentionCutoff = (retentionDays > 0) ? UsageBuckets.addDays(today, -retentionDays) : Long.MIN_VALUE;
+        this.hourCutoff = Math.max(UsageBuckets.addDays(today, -HOURLY_DAYS), retentionCutoff);
+        // The longest daily range starts QUARTER.days - 1 days back
+        this.dayCutoff = Math.max(UsageBuckets.addDays(today, -UsageRange.QUARTER.days), retentionCutoff);
+        // A week that reaches into the window is kept whole
+        this.weekCutoff = (retentionDays > 0) ? UsageBuckets.getWeekStart(retentionCutoff) : Long.MIN_VALUE;
+    }
+
+    /**
+     * Runs the next chunk of work.
+     * @return Whether there is more to do.
+     */
+    public boolean runChunk() {
+        UsageHistoryDao dao = db.usageHistoryDao();
+        switch (step) {
+            case HOURS:
+                if (hourCutoff > SettingsHelper.getHoursCompactedBefore(context)) {
+                    // Recorded first, so an import can no longer add these hours to the rollups again
+                    SettingsHelper.setHoursCompactedBefore(context, hourCutoff);
+                }
+                nextIfDone(dao.deleteHoursBefore(hourCutoff, CHUNK_ROWS), Step.DAYS);
+                return true;
+            case DAYS:
+                if (dayCutoff > SettingsHelper.getDaysCompactedBefore(context)) {
+                    SettingsHelper.setDaysCompactedBefore(context, dayCutoff);
+                }
+                nextIfDone(dao.deleteDaysBefore(dayCutoff, CHUNK_ROWS), Step.WEEKS);
+                return true;
+            case WEEKS:
+                nextIfDone(dao.deleteWeeksBefore(weekCutoff, CHUNK_ROWS), Step.VACUUM);
+                return true;
+            case VACUUM:
+                if (!vacuumChunk()) {
+                    step = Step.CHECKPOINT;
+                }
+                return true;
+            case CHECKPOINT:
+                // PASSIVE does not wait for readers or writers; whatever is busy is left for next time
+                runPragma(db.getOpenHelper().getWritableDatabase(), "PRAGMA wal_checkpoint(PASSIVE)");
+                step = Step.DONE;
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    public long getRowsDeleted() {
+        return rowsDeleted;
+    }
+
+    private void nextIfDone(int deleted, Step next) {
+        rowsDeleted += deleted;
+        if (deleted < CHUNK_ROWS) {
+            step = next;
+        }
+    }
+
+    /**
+     * @return Whether free pages are left for another chunk.
+     */
+    private boolean vacuumChunk() {
+        SupportSQLiteDatabase database = db.getOpenHelper().getWritableDatabase();
+        // Only databases created with incremental auto-vacuum (see AppDatabase) can free pages a few at
+        // a time. Older ones would need one full VACUUM, a long exclusive rewrite that needs twice the
+        // file size free, so they are left alone; SQLite still reuses their free pages.
+        if (runPragma(database, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) return false;
+        if (runPragma(database, "PRAGMA freelist_count") == 0) return false;
+        runPragma(database, "PRAGMA incremental_vacuum(" + VACUUM_PAGES + ")");
+        return true;
+    }
+
+    /**
+     * Runs a pragma through a cursor, which steps it to the end; execSQL steps only once, so
+     * incremental_vacuum would free a single page.
+     * @return The first column of the first row, or -1 if there is none.
+     */
+    private static long runPragma(SupportSQLiteDatabase database, String sql) {
+        try (Cursor cursor = database.query(sql)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+    }
+}
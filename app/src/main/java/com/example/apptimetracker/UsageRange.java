@@ -0,0 +1,31 @@
+package com.example.apptimetracker;
+
+/**
+ * The time ranges the dashboard can show. The last 24 hours come straight from the system;
+ * longer ranges are read from the rollup tables in {@link AppDatabase}.
+ */
+public enum UsageRange {
+    DAY("Last 24 hours", 1),
+    WEEK("Last 7 days", 7),
+    MONTH("Last 30 days", 30),
+    QUARTER("Last 90 days", 90),
+    YEAR("Last 52 weeks", 364);
+
+    public final String label;
+    public final int days;
+
+    UsageRange(String label, int days) {
+        this.label = label;
+        this.days = days;
+    }
+
+    // Beyond a quarter, weekly rows keep the read at about one row per app per week
+    public boolean usesWeeklyRollup() {
+        return days > QUARTER.days;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
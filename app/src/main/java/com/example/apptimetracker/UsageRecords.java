@@ -0,0 +1,54 @@
+package com.example.apptimetracker;
+
+import java.io.IOException;
+
+/**
+ * The records of an export file: the default limit, the per-app limits and the usage history as
+ * hours, days and weeks, one record per row of {@code hourly_usage}, {@code daily_usage} and
+ * {@code weekly_usage}. The days and weeks carry the history that maintenance has already
+ * dropped from the finer tables. Writers put all hours before the days and all days before the
+ * weeks, each in time order. Each {@link TransferFormat} has a writer and a reader for them that
+ * work one record at a time, so neither side ever holds a whole table.
+ */
+public final class UsageRecords {
+
+    private UsageRecords() {}
+
+    public interface Writer {
+        void writeDefaultLimit(long limitMillis) throws IOException;
+
+        void writeLimit(String packageName, long limitMillis) throws IOException;
+
+        void writeHour(String packageName, long hourStart, long usageMillis) throws IOException;
+
+        void writeDay(String packageName, long dayStart, long usageMillis) throws IOException;
+
+        void writeWeek(String packageName, long weekStart, long usageMillis) throws IOException;
+
+        /**
+         * Ends the file and writes out everything still buffered.
+         * @return How many records were written.
+         */
+        long finish() throws IOException;
+    }
+
+    public interface Listener {
+        void onDefaultLimit(long limitMillis);
+
+        void onLimit(String packageName, long limitMillis);
+
+        void onHour(String packageName, long hourStart, long usageMillis);
+
+        void onDay(String packageName, long dayStart, long usageMillis);
+
+        void onWeek(String packageName, long weekStart, long usageMillis);
+    }
+
+    public interface Reader {
+        /**
+         * Reads the whole file, handing each record to the listener as soon as it is read.
+         * @throws IOException If the file is malformed or ends before its last record.
+         */
+        void read(Listener listener) throws IOException;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.apptimetracker;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of one dashboard load. Its rows live in {@code snapshot_usage} under
+ * {@link #snapshotId}; only the chart's apps are held in memory. Never changed afterwards.
+ */
+public class UsageSnapshot {
+    public final long snapshotId;
+    public final int size;
+    // The most used apps for the chart, most used first
+    public final List<AppUsageInfo> topApps;
+
+    public UsageSnapshot(long snapshotId, int size, List<AppUsageInfo> topApps) {
+        this.snapshotId = snapshotId;
+        this.size = size;
+        this.topApps = Collections.unmodifiableList(topApps);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.apptimetracker;
+
+import android.app.usage.UsageStats;
+import android.app.usage.UsageStatsManager;
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Builds a {@link UsageSnapshot} of a {@link UsageRange} in the {@code snapshot_usage} table.
+ * Long ranges are summed by SQLite straight from the rollups; only the chart's top apps are
+ * read back here, the list reads its rows a page at a time through {@link PagedUsageList}.
+ * Runs on a background thread and stops early with a {@link CancellationException} when that
+ * thread is interrupted. Icons are not loaded here; the list gets them from {@link AppIconCache}.
+ */
+public class UsageSnapshotLoader {
+    private static final int CHART_APP_COUNT = 3;
+    // What each loader (one per activity) still shows. A load keeps all of them, so it never
+    // deletes a snapshot another activity is reading, e.g. while the activity is recreated.
+    private static final HashMap<UsageSnapshotLoader, List<Long>> snapshotsInUse = new HashMap<>();
+
+    private final Context context;
+    private final AppDatabase db;
+
+    public UsageSnapshotLoader(Context context) {
+        this.context = context.getApplicationContext();
+        this.db = AppDatabase.getDatabase(context);
+    }
+
+    /**
+     * Taking the next id, writing the rows and deleting the snapshots nobody shows any more are
+     * one transaction, so loads on different threads never share an id or delete each other's
+     * snapshot. The system and package manager calls happen before it.
+     * @param keepSnapshotIds The snapshots still in use on screen, which stay readable until this
+     *                        one replaces them.
+     */
+    public UsageSnapshot load(UsageRange range, List<Long> keepSnapshotIds) {
+        SnapshotDao snapshotDao = db.snapshotDao();
+        PackageIndex packageIndex = PackageIndex.getInstance(context);
+        packageIndex.ensureLoaded();
+        long snapshotId;
+        if (range == UsageRange.DAY) {
+            List<SnapshotUsage> rows = readLastDay(packageIndex);
+            checkCancelled();
+            snapshotId = insertSnapshot(id -> {
+                for (SnapshotUsage row : rows) {
+                    row.snapshotId = id;
+                }
+                snapshotDao.insertAll(rows);
+            }, keepSnapshotIds);
+        } else {
+            long today = UsageBuckets.getDayStart(System.currentTimeMillis());
+            long endTime = UsageBuckets.addDays(today, 1);
+            boolean weekly = range.usesWeeklyRollup();
+            long startTime = weekly ? UsageBuckets.addDays(UsageBuckets.getWeekStart(today), -(range.days - 7))
+                    : UsageBuckets.addDays(today, -(range.days - 1));
+            // The join only sees packages the index knows, so apps it has not met yet are indexed first
+            indexAll(weekly ? snapshotDao.getUnindexedWeeklyPackages(startTime, endTime)
+                    : snapshotDao.getUnindexedDailyPackages(startTime, endTime), packageIndex);
+            checkCancelled();
+            // Sums the pre-aggregated rows of the range, about one row per app per day (or week)
+            snapshotId = insertSnapshot(id -> {
+                if (weekly) {
+                    snapshotDao.insertWeeklyTotals(id, startTime, endTime);
+                } else {
+                    snapshotDao.insertDailyTotals(id, startTime, endTime);
+                }
+            }, keepSnapshotIds);
+        }
+
+        checkCancelled();
+        int size = snapshotDao.count(snapshotId);
+        String defaultLimit = formatDefaultLimit(context);
+        List<AppUsageInfo> topApps = new ArrayList<>();
+        for (SnapshotRow row : snapshotDao.getPageByTimeDescending(snapshotId, CHART_APP_COUNT, 0)) {
+            topApps.add(toAppUsageInfo(row, defaultLimit));
+        }
+        return new UsageSnapshot(snapshotId, size, topApps);
+    }
+
+    /**
+     * Reads every app of the snapshot once to build its search index.
+     */
+    public AppSearchIndex loadSearchIndex(UsageSnapshot snapshot) {
+        String defaultLimit = formatDefaultLimit(context);
+        List<SnapshotRow> rows = db.snapshotDao().getPageByNameAscending(snapshot.snapshotId, snapshot.size, 0);
+        List<AppUsageInfo> apps = new ArrayList<>(rows.size());
+        for (SnapshotRow row : rows) {
+            apps.add(toAppUsageInfo(row, defaultLimit));
+        }
+        return new AppSearchIndex(apps);
+    }
+
+    static String formatDefaultLimit(Context context) {
+        return "Default limit " + UsageTimeFormat.hoursMinutes(SettingsHelper.getDefaultLimit(context));
+    }
+
+    static AppUsageInfo toAppUsageInfo(SnapshotRow row, String defaultLimit) {
+        String formattedLimit = (row.timeLimitMillis != null)
+                ? "Limit " + UsageTimeFormat.hoursMinutes(row.timeLimitMillis) : defaultLimit;
+        return new AppUsageInfo(row.label, UsageTimeFormat.withSeconds(row.usageMillis), row.usageMillis,
+                row.packageName, formattedLimit);
+    }
+
+    // Takes the next id, writes the rows under it and deletes the snapshots nobody shows any more
+    private long insertSnapshot(LongConsumer insertRows, List<Long> keepSnapshotIds) {
+        SnapshotDao snapshotDao = db.snapshotDao();
+        return db.runInTransaction(() -> {
+            long snapshotId = snapshotDao.getLatestSnapshotId() + 1;
+            insertRows.accept(snapshotId);
+            snapshotDao.deleteAllExcept(keepInUse(snapshotId, keepSnapshotIds));
+            return snapshotId;
+        });
+    }
+
+    /**
+     * Lets later loads delete the snapshots this loader's activity showed; call when it is destroyed.
+     */
+    public void release() {
+        synchronized (snapshotsInUse) {
+            snapshotsInUse.remove(this);
+        }
+    }
+
+    /**
+     * Records the new snapshot and the ones still shown as this loader's, and returns those of all
+     * loaders. Called inside the snapshot's transaction, so a load that commits after it already
+     * sees the new snapshot.
+     */
+    private List<Long> keepInUse(long snapshotId, List<Long> keepSnapshotIds) {
+        synchronized (snapshotsInUse) {
+            List<Long> own = new ArrayList<>(keepSnapshotIds);
+            own.add(snapshotId);
+            snapshotsInUse.put(this, own);
+            List<Long> keep = new ArrayList<>();
+            for (List<Long> snapshotIds : snapshotsInUse.values()) {
+                keep.addAll(snapshotIds);
+            }
+            return keep;
+        }
+    }
+
+    private List<SnapshotUsage> readLastDay(PackageIndex packageIndex) {
+        UsageStatsManager usm = (UsageStatsManager) context.getSystemService(Context.USAGE_STATS_SERVICE);
+        long endTime = System.currentTimeMillis();
+        long startTime = endTime - TimeUnit.DAYS.toMillis(1);
+        List<UsageStats> usageStatsList = usm.queryUsageStats(UsageStatsManager.INTERVAL_DAILY, startTime, endTime);
+
+        Map<String, Long> totals = new HashMap<>();
+        if (usageStatsList != null) {
+            for (UsageStats stats : usageStatsList) {
+                totals.putIfAbsent(stats.getPackageName(), stats.getTotalTimeInForeground());
+            }
+        }
+
+        List<SnapshotUsage> rows = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : totals.entrySet()) {
+            checkCancelled();
+            long usageMillis = entry.getValue();
+            if (usageMillis <= 0) continue;
+            // Uninstalled apps are left out, as before
+            PackageMetadata metadata = packageIndex.getOrIndex(entry.getKey());
+            if (metadata == null) continue;
+            SnapshotUsage row = new SnapshotUsage();
+            row.packageName = entry.getKey();
+            row.label = metadata.label;
+            row.usageMillis = usageMillis;
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Sums the pre-aggregated rows of the range, about one row per app per day (or week).
+     */
+    private void insertFromRollups(UsageRange range, long snapshotId, PackageIndex packageIndex) {
+        SnapshotDao snapshotDao = db.snapshotDao();
+        long today = UsageBuckets.getDayStart(System.currentTimeMillis());
+        long endTime = UsageBuckets.addDays(today, 1);
+        if (range.usesWeeklyRollup()) {
+            long startTime = UsageBuckets.addDays(UsageBuckets.getWeekStart(today), -(range.days - 7));
+            indexAll(snapshotDao.getUnindexedWeeklyPackages(startTime, endTime), packageIndex);
+            checkCancelled();
+            snapshotDao.insertWeeklyTotals(snapshotId, startTime, endTime);
+        } else {
+            long startTime = UsageBuckets.addDays(today, -(range.days - 1));
+            indexAll(snapshotDao.getUnindexedDailyPackages(startTime, endTime), packageIndex);
+            checkCancelled();
+            snapshotDao.insertDailyTotals(snapshotId, startTime, endTime);
+        }
+    }
+
+    private static void indexAll(List<String> packageNames, PackageIndex packageIndex) {
+        for (String packageName : packageNames) {
+            packageIndex.getOrIndex(packageName);
+        }
+    }
+
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+}
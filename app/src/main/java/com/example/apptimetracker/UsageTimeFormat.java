@@ -0,0 +1,41 @@
+package com.example.apptimetracker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns usage durations into the text shown to the user.
+ * Has no Android dependency, so the benchmark module can measure it on the host.
+ */
+public final class UsageTimeFormat {
+
+    private UsageTimeFormat() {}
+
+    /**
+     * @return E.g. "1 hr, 5 min" or "5 min", as shown in the limit alert.
+     */
+    public static String hoursMinutes(long millis) {
+        long hours = TimeUnit.MILLISECONDS.toHours(millis);
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(millis) % 60;
+        if (hours > 0) {
+            return String.format("%d hr, %d min", hours, minutes);
+        } else {
+            return String.format("%d min", minutes);
+        }
+    }
+
+    /**
+     * @return E.g. "1 hr, 5 min", "5 min, 3 sec" or "3 sec", as shown in the dashboard list.
+     */
+    public static String withSeconds(long millis) {
+        long hours = TimeUnit.MILLISECONDS.toHours(millis);
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(millis) % 60;
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(millis) % 60;
+        if (hours > 0) {
+            return String.format("%d hr, %d min", hours, minutes);
+        } else if (minutes > 0) {
+            return String.format("%d min, %d sec", minutes, seconds);
+        } else {
+            return String.format("%d sec", seconds);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.apptimetracker;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+// Rollup of hourly_usage, kept up to date by UsageHistoryDao.addAll()
+@Entity(tableName = "weekly_usage",
+        primaryKeys = {"package_name", "week_start"},
+        indices = {@Index("week_start")})
+public class WeeklyUsage {
+    @NonNull
+    @ColumnInfo(name = "package_name")
+    public String packageName;
+
+    // Start of the local week (Monday midnight) this bucket covers
+    @ColumnInfo(name = "week_start")
+    public long weekStart;
+
+    @ColumnInfo(name = "usage_millis")
+    public long usageMillis;
+}
@@ -0,0 +1,78 @@
+package com.example.apptimetracker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AppSearchIndexTest {
+    private AppSearchIndex index;
+
+    @Before
+    public void setUp() {
+        // In ascending name order, as the snapshot hands them over
+        index = new AppSearchIndex(Arrays.asList(
+                app("Calendar", "com.google.android.calendar", 300),
+                app("Chrome", "com.android.chrome", 500),
+                app("\u00c9lan", "org.elan.app", 200),
+                app("Gmail", "com.google.android.gm", 100),
+                app("Google Maps", "com.google.android.apps.maps", 400)));
+    }
+
+    @Test
+    public void substring_matchesLabelsAndPackageNames() {
+        assertEquals(Arrays.asList("Google Maps"), names(index.search("maps", false, true)));
+        assertEquals(Arrays.asList("Calendar", "Gmail", "Google Maps"),
+                names(index.search("google", false, true)));
+        assertEquals(Arrays.asList("Chrome"), names(index.search("android.chr", false, true)));
+    }
+
+    @Test
+    public void shortQuery_matchesTheStartOfWords() {
+        assertEquals(Arrays.asList("Gmail"), names(index.search("gm", false, true)));
+        // Not "Gmail", where "ma" is inside a word
+        assertEquals(Arrays.asList("Google Maps"), names(index.search("ma", false, true)));
+        // "c" starts "calendar", "chrome" and the "com" of two more package names
+        assertEquals(Arrays.asList("Calendar", "Chrome", "Gmail", "Google Maps"),
+                names(index.search("c", false, true)));
+    }
+
+    @Test
+    public void caseAndAccents_areIgnored() {
+        assertEquals(Arrays.asList("\u00c9lan"), names(index.search("ELAN", false, true)));
+        assertEquals(Arrays.asList("\u00c9lan"), names(index.search("\u00e9l", false, true)));
+    }
+
+    @Test
+    public void matches_keepTheListOrder() {
+        assertEquals(Arrays.asList("Google Maps", "Gmail", "Calendar"),
+                names(index.search("google", false, false)));
+        assertEquals(Arrays.asList("Gmail", "Calendar", "Google Maps"),
+                names(index.search("google", true, true)));
+        assertEquals(Arrays.asList("Chrome", "Google Maps", "Calendar", "\u00c9lan", "Gmail"),
+                names(index.search(" ", true, false)));
+    }
+
+    @Test
+    public void noMatch_isEmpty() {
+        assertTrue(index.search("spotify", false, true).isEmpty());
+        assertTrue(index.search("xz", true, true).isEmpty());
+    }
+
+    private static AppUsageInfo app(String name, String packageName, long usageMinutes) {
+        long usageMillis = usageMinutes * 60_000;
+        return new AppUsageInfo(name, UsageTimeFormat.withSeconds(usageMillis), usageMillis, packageName, "");
+    }
+
+    private static List<String> names(List<AppUsageInfo> apps) {
+        List<String> names = new ArrayList<>();
+        for (AppUsageInfo app : apps) {
+            names.add(app.appName);
+        }
+        return names;
+    }
+}
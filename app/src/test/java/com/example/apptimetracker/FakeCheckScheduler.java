@@ -0,0 +1,29 @@
+package com.example.apptimetracker;
+
+// Remembers when the engine wants its next check; the test runs it by moving the clock there
+public class FakeCheckScheduler implements CheckScheduler {
+    public static final long NONE = Long.MAX_VALUE;
+
+    private final Clock clock;
+    private long dueAt = NONE;
+    public int scheduleCount;
+
+    public FakeCheckScheduler(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void schedule(long delayMillis) {
+        dueAt = clock.now() + delayMillis;
+        scheduleCount++;
+    }
+
+    @Override
+    public void cancel() {
+        dueAt = NONE;
+    }
+
+    public long getDueAt() {
+        return dueAt;
+    }
+}
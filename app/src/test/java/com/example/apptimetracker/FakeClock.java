@@ -0,0 +1,23 @@
+package com.example.apptimetracker;
+
+// Simulated time for UsageEngine; only moves when the test moves it
+public class FakeClock implements Clock {
+    private long now;
+
+    public FakeClock(long now) {
+        this.now = now;
+    }
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    public void set(long now) {
+        this.now = now;
+    }
+
+    public void advance(long millis) {
+        now += millis;
+    }
+}
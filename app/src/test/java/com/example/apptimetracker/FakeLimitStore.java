@@ -0,0 +1,31 @@
+package com.example.apptimetracker;
+
+import java.util.HashMap;
+
+public class FakeLimitStore implements LimitStore {
+    private final HashMap<String, Long> limits = new HashMap<>();
+    private long defaultLimit;
+
+    public FakeLimitStore(long defaultLimit) {
+        this.defaultLimit = defaultLimit;
+    }
+
+    public void setLimit(String packageName, long limitMillis) {
+        limits.put(packageName, limitMillis);
+    }
+
+    public void setDefaultLimit(long defaultLimit) {
+        this.defaultLimit = defaultLimit;
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return true;
+    }
+
+    @Override
+    public long getLimit(String packageName) {
+        Long limit = limits.get(packageName);
+        return (limit != null) ? limit : defaultLimit;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.apptimetracker;
+
+import java.util.ArrayDeque;
+
+// Foreground changes pushed by the test and handed out on the engine's next poll
+public class FakeUsageEventSource implements UsageEventSource {
+    private final ArrayDeque<String> packages = new ArrayDeque<>();
+    private final ArrayDeque<Long> timestamps = new ArrayDeque<>();
+
+    /**
+     * Queues a foreground change; {@code packageName} may be null for "no app".
+     */
+    public void push(String packageName, long timestamp) {
+        packages.add(packageName != null ? packageName : "");
+        timestamps.add(timestamp);
+    }
+
+    @Override
+    public void poll(long now, Listener listener) {
+        while (!timestamps.isEmpty() && timestamps.peek() <= now) {
+            String packageName = packages.poll();
+            listener.onForegroundAppChanged(packageName.isEmpty() ? null : packageName, timestamps.poll());
+        }
+    }
+
+    @Override
+    public void clearForeground() {
+        // Nothing to forget; every pushed change is delivered as is
+    }
+}
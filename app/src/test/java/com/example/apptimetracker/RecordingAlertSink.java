@@ -0,0 +1,17 @@
+package com.example.apptimetracker;
+
+// Counts the engine's alert decisions instead of showing an overlay
+public class RecordingAlertSink implements AlertSink {
+    public int alertCount;
+    public String lastPackageName;
+    public long lastUsageMillis;
+    public long lastLimitMillis;
+
+    @Override
+    public void showAlert(String packageName, long usageMillis, long limitMillis) {
+        alertCount++;
+        lastPackageName = packageName;
+        lastUsageMillis = usageMillis;
+        lastLimitMillis = limitMillis;
+    }
+}
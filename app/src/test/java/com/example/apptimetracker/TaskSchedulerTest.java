@@ -0,0 +1,142 @@
+package com.example.apptimetracker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TaskSchedulerTest {
+    private TaskScheduler.Group tasks;
+    private CountDownLatch release;
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws InterruptedException {
+        tasks = new TaskScheduler(1).newGroup();
+        // Keeps the background worker busy so everything else submitted in the test waits in the queue
+        release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        tasks.execute(TaskScheduler.Lane.UI, () -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void waitingTaskWithTheSameKey_isReplaced() throws InterruptedException {
+        tasks.execute(TaskScheduler.Lane.UI, "sort", () -> ran.add("first"));
+        tasks.execute(TaskScheduler.Lane.UI, "sort", () -> ran.add("second"));
+        tasks.execute(TaskScheduler.Lane.UI, "search", () -> ran.add("other"));
+
+        drain();
+        assertEquals(Arrays.asList("second", "other"), ran);
+    }
+
+    @Test
+    public void backgroundLanes_runInPriorityOrder() throws InterruptedException {
+        tasks.execute(TaskScheduler.Lane.MAINTENANCE, () -> ran.add("maintenance"));
+        tasks.execute(TaskScheduler.Lane.UI, () -> ran.add("ui"));
+
+        drain();
+        assertEquals(Arrays.asList("ui", "maintenance"), ran);
+    }
+
+    @Test
+    public void trackingTask_doesNotWaitForRunningBackgroundTask() throws InterruptedException {
+        CountDownLatch tracked = new CountDownLatch(1);
+        tasks.execute(TaskScheduler.Lane.TRACKING, tracked::countDown);
+
+        // The background worker is still blocked in setUp()'s task
+        assertTrue(tracked.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void taskWithTheKeyOfARunningTask_waitsForIt() throws InterruptedException {
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        tasks.execute(TaskScheduler.Lane.TRACKING, "flush", () -> {
+            firstStarted.countDown();
+            awaitQuietly(releaseFirst);
+            ran.add("first");
+        });
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        tasks.execute(TaskScheduler.Lane.TRACKING, "flush", () -> ran.add("second"));
+
+        releaseFirst.countDown();
+        drain();
+        assertEquals(Arrays.asList("first", "second"), ran);
+    }
+
+    @Test
+    public void failingTask_doesNotStopLaterTasks() throws InterruptedException {
+        tasks.execute(TaskScheduler.Lane.UI, () -> {
+            throw new IllegalStateException("expected by the test");
+        });
+        tasks.execute(TaskScheduler.Lane.UI, () -> ran.add("after"));
+
+        drain();
+        assertEquals(Collections.singletonList("after"), ran);
+    }
+
+    @Test
+    public void failingTask_isHandedToTheFailureHandler() throws InterruptedException {
+        TaskScheduler scheduler = new TaskScheduler(1);
+        scheduler.setFailureHandler((lane, e) -> ran.add(lane + ": " + e.getMessage()));
+        CountDownLatch done = new CountDownLatch(1);
+        TaskScheduler.Group group = scheduler.newGroup();
+        group.execute(TaskScheduler.Lane.MAINTENANCE, () -> {
+            throw new IllegalStateException("expected by the test");
+        });
+        group.execute(TaskScheduler.Lane.MAINTENANCE, done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("MAINTENANCE: expected by the test"), ran);
+        release.countDown();
+    }
+
+    @Test
+    public void shutdown_runsQueuedTasksButRefusesNewOnes() throws InterruptedException {
+        tasks.execute(TaskScheduler.Lane.TRACKING, () -> ran.add("queued"));
+        tasks.shutdown();
+        tasks.execute(TaskScheduler.Lane.TRACKING, () -> ran.add("late"));
+
+        release.countDown();
+        Thread.sleep(200);
+        assertEquals(Collections.singletonList("queued"), ran);
+    }
+
+    @Test
+    public void cancel_dropsTheWaitingTask() throws InterruptedException {
+        tasks.execute(TaskScheduler.Lane.UI, "load", () -> ran.add("load"));
+        tasks.cancel("load");
+
+        drain();
+        assertTrue(ran.isEmpty());
+    }
+
+    // Releases the background worker and waits until everything queued before has run
+    private void drain() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(2);
+        tasks.execute(TaskScheduler.Lane.TRACKING, done::countDown);
+        tasks.execute(TaskScheduler.Lane.MAINTENANCE, done::countDown);
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
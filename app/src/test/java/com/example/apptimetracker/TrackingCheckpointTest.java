@@ -0,0 +1,43 @@
+package com.example.apptimetracker;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TrackingCheckpointTest {
+
+    @Test
+    public void roundTrip_keepsEveryField() throws IOException {
+        Map<String, Long> totals = new HashMap<>();
+        totals.put("com.example.mail", 1_200_000L);
+        totals.put("com.example.maps", 300_000L);
+        TrackingCheckpoint checkpoint = new TrackingCheckpoint(86_400_000L, 90_000_000L, 89_999_001L,
+                "com.example.launcher", null, totals,
+                Collections.singletonMap("com.example.mail", AlertStates.UNTIL_DISMISSED));
+
+        TrackingCheckpoint read = TrackingCheckpoint.fromByteArray(checkpoint.toByteArray());
+
+        assertEquals(checkpoint.dayStart, read.dayStart);
+        assertEquals(checkpoint.savedAt, read.savedAt);
+        assertEquals(checkpoint.eventCursor, read.eventCursor);
+        assertEquals("com.example.launcher", read.sourceForegroundPackage);
+        assertNull(read.foregroundPackage);
+        assertEquals(totals, read.totals);
+        assertEquals(checkpoint.alertQuietTimes, read.alertQuietTimes);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedData_isRejected() throws IOException {
+        TrackingCheckpoint checkpoint = new TrackingCheckpoint(0, 1, 1, "app", "app",
+                Collections.singletonMap("app", 1L), Collections.emptyMap());
+        byte[] data = checkpoint.toByteArray();
+        TrackingCheckpoint.readFrom(new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 4)));
+    }
+}
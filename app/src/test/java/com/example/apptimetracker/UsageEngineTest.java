@@ -0,0 +1,258 @@
+package com.example.apptimetracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class UsageEngineTest {
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private FakeClock clock;
+    private FakeUsageEventSource eventSource;
+    private FakeLimitStore limitStore;
+    private RecordingAlertSink alertSink;
+    private FakeCheckScheduler checkScheduler;
+    private UsageEngine engine;
+    private final List<Long> newDays = new ArrayList<>();
+    private TimeZone defaultTimeZone;
+
+    @Before
+    public void setUp() {
+        // Days follow the local time zone; in UTC the first day is [0, DAY)
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        clock = new FakeClock(0);
+        eventSource = new FakeUsageEventSource();
+        limitStore = new FakeLimitStore(60 * MINUTE);
+        alertSink = new RecordingAlertSink();
+        checkScheduler = new FakeCheckScheduler(clock);
+        engine = new UsageEngine(eventSource, clock, limitStore, alertSink, checkScheduler,
+                "launcher"::equals, newDays::add);
+        engine.seed(new HashMap<>(), engine.getDayStart());
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    @Test
+    public void check_isScheduledWhenTheBudgetRunsOut() {
+        limitStore.setLimit("app", 10 * MINUTE);
+        eventSource.push("app", 0);
+        engine.poll();
+
+        assertEquals(10 * MINUTE + UsageEngine.DEADLINE_MARGIN, checkScheduler.getDueAt());
+        assertEquals(0, alertSink.alertCount);
+
+        clock.set(checkScheduler.getDueAt());
+        engine.check();
+        assertEquals(1, alertSink.alertCount);
+        assertEquals("app", alertSink.lastPackageName);
+    }
+
+    @Test
+    public void alertOnScreen_isNotShownAgain() {
+        limitStore.setLimit("app", 10 * MINUTE);
+        eventSource.push("app", 0);
+        engine.poll();
+        clock.set(11 * MINUTE);
+        engine.check();
+        clock.set(12 * MINUTE);
+        engine.check();
+
+        assertEquals(1, alertSink.alertCount);
+        assertEquals(AlertStates.State.NOTIFIED, engine.getAlertState("app"));
+    }
+
+    @Test
+    public void dismissedAlert_returnsAfterTheSnooze() {
+        limitStore.setLimit("app", 10 * MINUTE);
+        eventSource.push("app", 0);
+        engine.poll();
+        clock.set(11 * MINUTE);
+        engine.check();
+        clock.set(12 * MINUTE);
+        engine.onAlertDismissed("app");
+
+        assertEquals(AlertStates.State.DISMISSED, engine.getAlertState("app"));
+        assertEquals(12 * MINUTE + UsageEngine.ALERT_SNOOZE, checkScheduler.getDueAt());
+
+        clock.set(checkScheduler.getDueAt());
+        engine.check();
+        assertEquals(2, alertSink.alertCount);
+    }
+
+    @Test
+    public void seededUsage_countsTowardsTheLimit() {
+        engine.seed(Collections.singletonMap("app", 55 * MINUTE), 0);
+        eventSource.push("app", 0);
+        engine.poll();
+
+        assertEquals(5 * MINUTE + UsageEngine.DEADLINE_MARGIN, checkScheduler.getDueAt());
+    }
+
+    @Test
+    public void switchingToTheLauncher_stopsCounting() {
+        eventSource.push("app", 0);
+        eventSource.push("launcher", 5 * MINUTE);
+        clock.set(5 * MINUTE);
+        engine.poll();
+        clock.set(30 * MINUTE);
+
+        assertNull(engine.getOpenPackage());
+        assertEquals(5 * MINUTE, engine.getUsage("app"));
+        assertEquals(FakeCheckScheduler.NONE, checkScheduler.getDueAt());
+    }
+
+    @Test
+    public void timeWhileParked_isNotCounted() {
+        eventSource.push("app", 0);
+        engine.poll();
+        clock.set(5 * MINUTE);
+        engine.park();
+        assertEquals(FakeCheckScheduler.NONE, checkScheduler.getDueAt());
+
+        // An event logged while the device was locked must not count the locked time
+        eventSource.push("app", 10 * MINUTE);
+        clock.set(20 * MINUTE);
+        engine.resume();
+        clock.set(25 * MINUTE);
+        engine.poll();
+
+        // 5 minutes before parking plus 5 since the resume, nothing for the locked time
+        assertEquals(10 * MINUTE, engine.getUsage("app"));
+    }
+
+    @Test
+    public void checkAfterMidnight_startsANewDay() {
+        List<long[]> intervals = new ArrayList<>();
+        engine.setOnIntervalClosedListener((packageName, start, end) -> intervals.add(new long[]{start, end}));
+        eventSource.push("app", DAY - 60 * MINUTE);
+        clock.set(DAY - 60 * MINUTE);
+        engine.poll();
+        assertEquals(DAY, checkScheduler.getDueAt());
+
+        clock.set(DAY);
+        engine.check();
+        engine.poll();
+
+        assertEquals(Collections.singletonList(DAY), newDays);
+        assertFalse(engine.isSeeded());
+        assertEquals(0, engine.getUsage("app"));
+        // The hour before midnight still goes to yesterday's history
+        assertEquals(1, intervals.size());
+        assertArrayEquals(new long[]{DAY - 60 * MINUTE, DAY}, intervals.get(0));
+
+        // Totals read for the old day arrive late and are dropped
+        engine.seed(Collections.singletonMap("app", 2 * 60 * MINUTE), 0);
+        assertFalse(engine.isSeeded());
+        engine.seed(new HashMap<>(), DAY);
+        assertTrue(engine.isSeeded());
+    }
+
+    @Test
+    public void clockChangeWithinTheDay_keepsTheTotals() {
+        eventSource.push("app", 0);
+        engine.poll();
+        clock.set(30 * MINUTE);
+        engine.onClockChanged();
+
+        assertTrue(newDays.isEmpty());
+        assertEquals(30 * MINUTE, engine.getUsage("app"));
+    }
+
+    @Test
+    public void timeZoneChange_startsANewDay() {
+        clock.set(23 * 60 * MINUTE);
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT+02:00"));
+        engine.onClockChanged();
+        engine.onClockChanged();
+
+        // 23:00 UTC is 01:00 the next day in UTC+2, which started at 22:00 UTC
+        assertEquals(Collections.singletonList(22 * 60 * MINUTE), newDays);
+    }
+
+    @Test
+    public void restart_resumesFromTheCheckpoint() {
+        List<long[]> intervals = new ArrayList<>();
+        engine.setOnIntervalClosedListener((packageName, start, end) -> intervals.add(new long[]{start, end}));
+        engine.seed(Collections.singletonMap("other", 15 * MINUTE), 0);
+        limitStore.setLimit("app", 60 * MINUTE);
+        eventSource.push("app", 0);
+        engine.poll();
+        clock.set(20 * MINUTE);
+        TrackingCheckpoint checkpoint = engine.checkpoint(0, "app");
+
+        // The open interval is cut, so the history has everything up to the checkpoint
+        assertEquals(1, intervals.size());
+        assertArrayEquals(new long[]{0, 20 * MINUTE}, intervals.get(0));
+
+        UsageEngine restarted = newEngine();
+        clock.set(30 * MINUTE);
+        assertTrue(restarted.restore(checkpoint));
+        assertTrue(restarted.isSeeded());
+        assertEquals(30 * MINUTE, restarted.getUsage("app"));
+        assertEquals(15 * MINUTE, restarted.getUsage("other"));
+        assertEquals(60 * MINUTE + UsageEngine.DEADLINE_MARGIN, checkScheduler.getDueAt());
+    }
+
+    @Test
+    public void alertOnScreenAtRestart_isSnoozed() {
+        limitStore.setLimit("app", 10 * MINUTE);
+        eventSource.push("app", 0);
+        engine.poll();
+        clock.set(11 * MINUTE);
+        engine.check();
+        TrackingCheckpoint checkpoint = engine.checkpoint(0, "app");
+
+        UsageEngine restarted = newEngine();
+        clock.set(12 * MINUTE);
+        restarted.restore(checkpoint);
+
+        assertEquals(AlertStates.State.DISMISSED, restarted.getAlertState("app"));
+        assertEquals(12 * MINUTE + UsageEngine.ALERT_SNOOZE, checkScheduler.getDueAt());
+        assertEquals(1, alertSink.alertCount);
+    }
+
+    @Test
+    public void checkpointOfAnotherDay_isNotRestored() {
+        eventSource.push("app", 0);
+        engine.poll();
+        clock.set(20 * MINUTE);
+        TrackingCheckpoint checkpoint = engine.checkpoint(0, "app");
+
+        clock.set(DAY + 20 * MINUTE);
+        UsageEngine restarted = newEngine();
+        assertFalse(restarted.restore(checkpoint));
+        assertFalse(restarted.isSeeded());
+    }
+
+    @Test
+    public void replayHarness_processesAllEvents() {
+        UsageReplayHarness.Scenario scenario = new UsageReplayHarness.Scenario();
+        scenario.days = 2;
+        scenario.packages = 200;
+        scenario.events = 20_000;
+        UsageReplayHarness.Report report = UsageReplayHarness.run(scenario);
+
+        assertEquals(20_000, report.events);
+        assertTrue(report.alerts > 0);
+        assertTrue(report.maxNanos >= report.p99Nanos);
+    }
+
+    private UsageEngine newEngine() {
+        return new UsageEngine(new FakeUsageEventSource(), clock, limitStore, alertSink, checkScheduler,
+                "launcher"::equals, newDays::add);
+    }
+}
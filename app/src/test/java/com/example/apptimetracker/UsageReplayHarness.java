@@ -0,0 +1,135 @@
+package com.example.apptimetracker;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds days of synthetic app-switch traffic through {@link UsageEngine} on simulated time and
+ * measures how fast it decides. Runs on a plain JVM; {@link #main} runs the full-size load test:
+ * <pre>
+ *   java com.example.apptimetracker.UsageReplayHarness [days] [packages] [events] [seed]
+ * </pre>
+ */
+public class UsageReplayHarness {
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    // Package 0 plays the launcher, so some switches go "home"
+    private static final String LAUNCHER = "com.example.launcher";
+
+    public static class Scenario {
+        public int days = 7;
+        public int packages = 5000;
+        public long events = 2_000_000;
+        public long seed = 42;
+    }
+
+    public static class Report {
+        public long events;
+        public long scheduledChecks;
+        public long decisions;
+        public long alerts;
+        public long elapsedNanos;
+        public long p50Nanos;
+        public long p99Nanos;
+        public long maxNanos;
+
+        public double eventsPerSecond() {
+            return events * 1e9 / Math.max(elapsedNanos, 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "events=%d checks=%d alerts=%d elapsed=%.1f ms throughput=%.0f events/s "
+                            + "decision latency p50=%d ns p99=%d ns max=%d ns",
+                    events, scheduledChecks, alerts, elapsedNanos / 1e6, eventsPerSecond(),
+                    p50Nanos, p99Nanos, maxNanos);
+        }
+    }
+
+    public static Report run(Scenario scenario) {
+        Random random = new Random(scenario.seed);
+        String[] packages = new String[scenario.packages];
+        packages[0] = LAUNCHER;
+        for (int i = 1; i < packages.length; i++) {
+            packages[i] = "com.synthetic.app" + i;
+        }
+
+        FakeClock clock = new FakeClock(0);
+        FakeUsageEventSource eventSource = new FakeUsageEventSource();
+        FakeLimitStore limitStore = new FakeLimitStore(TimeUnit.MINUTES.toMillis(15));
+        for (int i = 1; i < packages.length; i++) {
+            if (random.nextInt(4) == 0) {
+                limitStore.setLimit(packages[i], TimeUnit.MINUTES.toMillis(5 + random.nextInt(115)));
+            }
+        }
+        RecordingAlertSink alertSink = new RecordingAlertSink();
+        FakeCheckScheduler checkScheduler = new FakeCheckScheduler(clock);
+        UsageEngine[] engineRef = new UsageEngine[1];
+        // Each new simulated day starts with empty totals
+        UsageEngine engine = new UsageEngine(eventSource, clock, limitStore, alertSink, checkScheduler,
+                LAUNCHER::equals, dayStart -> engineRef[0].seed(new HashMap<>(), dayStart));
+        engineRef[0] = engine;
+        engine.seed(new HashMap<>(), engine.getDayStart());
+
+        // Spread the events evenly over the simulated days on average
+        double meanGap = (double) scenario.days * DAY / scenario.events;
+        long[] latencies = new long[(int) Math.min(scenario.events * 2, Integer.MAX_VALUE - 8)];
+        int decisions = 0;
+        long scheduledChecks = 0;
+        long time = 0;
+
+        long started = System.nanoTime();
+        for (long event = 0; event < scenario.events; event++) {
+            time += (long) (-Math.log(1 - random.nextDouble()) * meanGap) + 1;
+            // Run the deadline checks that fall before the next switch, as the Handler would
+            while (checkScheduler.getDueAt() <= time) {
+                clock.set(checkScheduler.getDueAt());
+                long before = System.nanoTime();
+                engine.check();
+                latencies[decisions++ % latencies.length] = System.nanoTime() - before;
+                scheduledChecks++;
+            }
+            clock.set(time);
+            // Skewed choice, so a few apps get most of the traffic like on a real phone
+            double r = random.nextDouble();
+            eventSource.push(packages[(int) (r * r * r * packages.length)], time);
+            long before = System.nanoTime();
+            engine.poll();
+            latencies[decisions++ % latencies.length] = System.nanoTime() - before;
+        }
+        long elapsed = System.nanoTime() - started;
+
+        Report report = new Report();
+        report.events = scenario.events;
+        report.scheduledChecks = scheduledChecks;
+        report.decisions = decisions;
+        report.alerts = alertSink.alertCount;
+        report.elapsedNanos = elapsed;
+        long[] sorted = Arrays.copyOf(latencies, Math.min(decisions, latencies.length));
+        Arrays.sort(sorted);
+        if (sorted.length > 0) {
+            report.p50Nanos = sorted[sorted.length / 2];
+            report.p99Nanos = sorted[(int) (sorted.length * 0.99)];
+            report.maxNanos = sorted[sorted.length - 1];
+        }
+        return report;
+    }
+
+    public static void main(String[] args) {
+        Scenario scenario = new Scenario();
+        if (args.length > 0) scenario.days = Integer.parseInt(args[0]);
+        if (args.length > 1) scenario.packages = Integer.parseInt(args[1]);
+        if (args.length > 2) scenario.events = Long.parseLong(args[2]);
+        if (args.length > 3) scenario.seed = Long.parseLong(args[3]);
+        // One short run first so the JIT has compiled the engine before we measure
+        Scenario warmup = new Scenario();
+        warmup.days = 1;
+        warmup.packages = scenario.packages;
+        warmup.events = Math.min(scenario.events, 100_000);
+        run(warmup);
+        System.out.println(run(scenario));
+    }
+}
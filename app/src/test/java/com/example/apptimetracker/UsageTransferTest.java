@@ -0,0 +1,182 @@
+package com.example.apptimetracker;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class UsageTransferTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    // Enough hours that both formats spill over several channel buffers
+    private static final int HOURS = 50_000;
+
+    // Every record as text, so the two sides can be compared as lists
+    private static class RecordingListener implements UsageRecords.Listener {
+        final List<String> records = new ArrayList<>();
+
+        @Override
+        public void onDefaultLimit(long limitMillis) {
+            records.add("default " + limitMillis);
+        }
+
+        @Override
+        public void onLimit(String packageName, long limitMillis) {
+            records.add("limit " + packageName + " " + limitMillis);
+        }
+
+        @Override
+        public void onHour(String packageName, long hourStart, long usageMillis) {
+            records.add("hour " + packageName + " " + hourStart + " " + usageMillis);
+        }
+
+        @Override
+        public void onDay(String packageName, long dayStart, long usageMillis) {
+            records.add("day " + packageName + " " + dayStart + " " + usageMillis);
+        }
+
+        @Override
+        public void onWeek(String packageName, long weekStart, long usageMillis) {
+            records.add("week " + packageName + " " + weekStart + " " + usageMillis);
+        }
+    }
+
+    @Test
+    public void csv_roundTrip() throws IOException {
+        assertRoundTrip(TransferFormat.CSV);
+    }
+
+    @Test
+    public void binary_roundTrip() throws IOException {
+        assertRoundTrip(TransferFormat.BINARY);
+    }
+
+    @Test
+    public void binary_isSmallerThanCsv() throws IOException {
+        assertTrue(write(TransferFormat.BINARY, new RecordingListener()).length
+                < write(TransferFormat.CSV, new RecordingListener()).length / 3);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedBinaryFile_isRejected() throws IOException {
+        byte[] file = write(TransferFormat.BINARY, new RecordingListener());
+        read(Arrays.copyOf(file, file.length - 3), new RecordingListener());
+    }
+
+    @Test
+    public void csvWithHoursOnlyHeader_isRead() throws IOException {
+        String file = "record,package_name,hour_start,millis\nhour,com.example.app,3600000,5\n";
+        RecordingListener read = new RecordingListener();
+        read(file.getBytes(StandardCharsets.UTF_8), read);
+        assertEquals(Arrays.asList("hour com.example.app 3600000 5"), read.records);
+    }
+
+    @Test
+    public void binaryVersion1File_isRead() throws IOException {
+        // A default limit of 5 and the end record, as written before days and weeks were exported
+        byte[] file = {'A', 'T', 'T', 'X', 1, 2, 5, 0, 1};
+        RecordingListener read = new RecordingListener();
+        read(file, read);
+        assertEquals(Arrays.asList("default 5"), read.records);
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedCsvLine_isRejected() throws IOException {
+        String file = "record,package_name,hour_start,millis\nhour,com.example.app,12x,5\n";
+        read(file.getBytes(StandardCharsets.UTF_8), new RecordingListener());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedCsvFile_isRejected() throws IOException {
+        byte[] file = write(TransferFormat.CSV, new RecordingListener());
+        // Cut inside the end record
+        read(Arrays.copyOf(file, file.length - 3), new RecordingListener());
+    }
+
+    @Test(expected = IOException.class)
+    public void csvFileCutAtALineEnd_isRejected() throws IOException {
+        String file = new String(write(TransferFormat.CSV, new RecordingListener()), StandardCharsets.UTF_8);
+        // Drops the end record and the last week, leaving only complete lines
+        int cut = file.lastIndexOf('\n', file.lastIndexOf('\n', file.length() - 2) - 1) + 1;
+        read(file.substring(0, cut).getBytes(StandardCharsets.UTF_8), new RecordingListener());
+    }
+
+    @Test(expected = IOException.class)
+    public void csvEndRecordWithWrongCount_isRejected() throws IOException {
+        String file = "record,package_name,start,millis\nhour,com.example.app,3600000,5\nend,,,2\n";
+        read(file.getBytes(StandardCharsets.UTF_8), new RecordingListener());
+    }
+
+    @Test
+    public void csv_readsEveryLongItCanWrite() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UsageRecords.Writer writer = TransferFormat.CSV.newWriter(Channels.newChannel(bytes));
+        writer.writeHour("com.example.app", Long.MIN_VALUE, Long.MAX_VALUE);
+        writer.finish();
+        RecordingListener read = new RecordingListener();
+        read(bytes.toByteArray(), read);
+        assertEquals(Arrays.asList("hour com.example.app " + Long.MIN_VALUE + " " + Long.MAX_VALUE), read.records);
+    }
+
+    @Test(expected = IOException.class)
+    public void csvNumberBeyondLong_isRejected() throws IOException {
+        String file = "record,package_name,hour_start,millis\nhour,com.example.app,9223372036854775808,5\n";
+        read(file.getBytes(StandardCharsets.UTF_8), new RecordingListener());
+    }
+
+    private static void assertRoundTrip(TransferFormat format) throws IOException {
+        RecordingListener written = new RecordingListener();
+        byte[] file = write(format, written);
+        RecordingListener read = new RecordingListener();
+        read(file, read);
+        assertEquals(written.records, read.records);
+    }
+
+    // Writes a sample export and records what was written
+    private static byte[] write(TransferFormat format, RecordingListener written) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UsageRecords.Writer writer = format.newWriter(Channels.newChannel(bytes));
+        writer.writeDefaultLimit(TimeUnit.MINUTES.toMillis(60));
+        written.onDefaultLimit(TimeUnit.MINUTES.toMillis(60));
+        for (int i = 0; i < 20; i++) {
+            writer.writeLimit("com.example.app" + i, i * 60_000L);
+            written.onLimit("com.example.app" + i, i * 60_000L);
+        }
+        long hourStart = 1_700_000_000_000L;
+        for (int i = 0; i < HOURS; i++) {
+            if (i % 7 == 0) hourStart += HOUR;
+            String packageName = "com.example.app" + (i * 31 % 200);
+            long usageMillis = (i * 7919L) % HOUR;
+            writer.writeHour(packageName, hourStart, usageMillis);
+            written.onHour(packageName, hourStart, usageMillis);
+        }
+        long dayStart = 1_690_000_000_000L;
+        for (int i = 0; i < HOURS / 10; i++) {
+            if (i % 7 == 0) dayStart += 24 * HOUR;
+            String packageName = "com.example.app" + (i * 31 % 200);
+            writer.writeDay(packageName, dayStart, i * 1000L);
+            written.onDay(packageName, dayStart, i * 1000L);
+        }
+        long weekStart = 1_600_000_000_000L;
+        for (int i = 0; i < HOURS / 50; i++) {
+            if (i % 7 == 0) weekStart += 7 * 24 * HOUR;
+            String packageName = "com.example.app" + (i * 31 % 200);
+            writer.writeWeek(packageName, weekStart, i * 5000L);
+            written.onWeek(packageName, weekStart, i * 5000L);
+        }
+        assertEquals(written.records.size(), writer.finish());
+        return bytes.toByteArray();
+    }
+
+    private static void read(byte[] file, UsageRecords.Listener listener) throws IOException {
+        TransferFormat.newReader(Channels.newChannel(new ByteArrayInputStream(file))).read(listener);
+    }
+}
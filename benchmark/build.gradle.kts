@@ -0,0 +1,56 @@
+// Host JVM benchmarks for the tracking and dashboard hot paths.
+// Run with ./gradlew :benchmark:jmh and compare build/results/jmh/results.txt with baseline.txt.
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The app classes under test have no Android dependency, so they are compiled straight from
+// the app's sources instead of being copied here.
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include(
+                "com/example/apptimetracker/AppSearchIndex.java",
+                "com/example/apptimetracker/AppUsageInfo.java",
+                "com/example/apptimetracker/AlertSink.java",
+                "com/example/apptimetracker/AlertStates.java",
+                "com/example/apptimetracker/CheckScheduler.java",
+                "com/example/apptimetracker/Clock.java",
+                "com/example/apptimetracker/DailyUsageAccumulator.java",
+                "com/example/apptimetracker/DayWindow.java",
+                "com/example/apptimetracker/LimitStore.java",
+                "com/example/apptimetracker/TrackingCheckpoint.java",
+                "com/example/apptimetracker/TrackingMetrics.java",
+                "com/example/apptimetracker/UsageBuckets.java",
+                "com/example/apptimetracker/UsageEngine.java",
+                "com/example/apptimetracker/UsageEventSource.java",
+                "com/example/apptimetracker/UsageTimeFormat.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    compileOnly(libs.annotation)
+    jmh(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+    // The DAO benchmarks run Room's SQL against the same schema on the host's SQLite
+    jmh(libs.sqlite.jdbc)
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh
+    fork = 1
+    warmupIterations = 3
+    warmup = "2s"
+    iterations = 5
+    timeOnIter = "2s"
+    resultFormat = "TEXT"
+}
@@ -0,0 +1,77 @@
+package com.example.apptimetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The dashboard search: the index built once per snapshot, and the lookup run on the main
+ * thread for every keystroke, which has to fit in a frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AppSearchIndexBenchmark {
+    private static final String[] WORDS = {
+            "Maps", "Camera", "Chrome", "Clock", "Files", "Gmail", "Photos", "Play", "Settings",
+            "Spotify", "Wallet", "Weather", "YouTube", "Zoom", "\u00c9diteur", "notes", "Calendar"
+    };
+
+    @Param({"50", "300", "1000"})
+    public int appCount;
+
+    private List<AppUsageInfo> apps;
+    private AppSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        apps = new ArrayList<>(appCount);
+        for (int i = 0; i < appCount; i++) {
+            String first = WORDS[random.nextInt(WORDS.length)];
+            String name = first + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            long usageMillis = (long) random.nextInt((int) TimeUnit.HOURS.toMillis(3));
+            apps.add(new AppUsageInfo(name, UsageTimeFormat.withSeconds(usageMillis), usageMillis,
+                    "com.example." + first.toLowerCase() + i, "Default limit 1h 0m"));
+        }
+        // The snapshot hands the apps over in name order
+        apps.sort(Comparator.comparing(app -> app.appName));
+        index = new AppSearchIndex(Collections.unmodifiableList(apps));
+    }
+
+    /**
+     * The first search of a snapshot.
+     */
+    @Benchmark
+    public AppSearchIndex build() {
+        return new AppSearchIndex(apps);
+    }
+
+    /**
+     * The first keystrokes, matched against the start of words.
+     */
+    @Benchmark
+    public List<AppUsageInfo> wordPrefix() {
+        return index.search("ca", true, false);
+    }
+
+    /**
+     * A longer query, matched anywhere through the trigrams.
+     */
+    @Benchmark
+    public List<AppUsageInfo> substring() {
+        return index.search("weath", true, false);
+    }
+}
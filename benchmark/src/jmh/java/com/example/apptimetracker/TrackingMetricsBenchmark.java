@@ -0,0 +1,32 @@
+package com.example.apptimetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the always-on instrumentation adds: one timed stage is a nanoTime pair and a histogram
+ * record, and a counted call is an hourly counter increment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrackingMetricsBenchmark {
+    private final TrackingMetrics metrics = new TrackingMetrics();
+
+    @Benchmark
+    public void timeStage() {
+        long start = System.nanoTime();
+        metrics.record(TrackingMetrics.Stage.DETECTION, System.nanoTime() - start);
+    }
+
+    @Benchmark
+    public void countBinderCall() {
+        metrics.countBinderCall();
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.apptimetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queries of {@link AppLimitDao}, {@link UsageHistoryDao} and {@link SnapshotDao} on the host's SQLite.
+ * Room's generated code needs Android, so the SQL and schema are repeated here; keep them
+ * in step with the DAOs and the migrations in {@code AppDatabase}.
+ * Statements are prepared once, like Android's per-connection statement cache does.
+ * The host has no LOCALIZED collation, so the snapshot labels use NOCASE instead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UsageDaoBenchmark {
+    private static final int PACKAGE_COUNT = 200;
+    private static final int LIMIT_COUNT = 50;
+    private static final int HISTORY_DAYS = 90;
+    private static final int ACTIVE_HOURS_PER_DAY = 8;
+    // About what the service flushes every few minutes
+    private static final int FLUSH_BATCH_SIZE = 10;
+    // PagedUsageList.PAGE_SIZE
+    private static final int PAGE_SIZE = 50;
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS `app_limits` (`package_name` TEXT NOT NULL, "
+                    + "`time_limit_millis` INTEGER NOT NULL, PRIMARY KEY(`package_name`))",
+            "CREATE TABLE IF NOT EXISTS `hourly_usage` (`package_name` TEXT NOT NULL, "
+                    + "`hour_start` INTEGER NOT NULL, `usage_millis` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`package_name`, `hour_start`))",
+            "CREATE INDEX IF NOT EXISTS `index_hourly_usage_hour_start` ON `hourly_usage` (`hour_start`)",
+            "CREATE TABLE IF NOT EXISTS `daily_usage` (`package_name` TEXT NOT NULL, "
+                    + "`day_start` INTEGER NOT NULL, `usage_millis` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`package_name`, `day_start`))",
+            "CREATE INDEX IF NOT EXISTS `index_daily_usage_day_start` ON `daily_usage` (`day_start`)",
+            "CREATE TABLE IF NOT EXISTS `weekly_usage` (`package_name` TEXT NOT NULL, "
+                    + "`week_start` INTEGER NOT NULL, `usage_millis` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`package_name`, `week_start`))",
+            "CREATE INDEX IF NOT EXISTS `index_weekly_usage_week_start` ON `weekly_usage` (`week_start`)",
+            "CREATE TABLE IF NOT EXISTS `package_metadata` (`package_name` TEXT NOT NULL, "
+                    + "`label` TEXT NOT NULL, `is_launcher` INTEGER NOT NULL, `is_system` INTEGER NOT NULL, "
+                    + "`version_code` INTEGER NOT NULL, PRIMARY KEY(`package_name`))",
+            "CREATE TABLE IF NOT EXISTS `snapshot_usage` (`snapshot_id` INTEGER NOT NULL, "
+                    + "`package_name` TEXT NOT NULL, `label` TEXT NOT NULL COLLATE NOCASE, "
+                    + "`usage_millis` INTEGER NOT NULL, PRIMARY KEY(`snapshot_id`, `package_name`))",
+            "CREATE INDEX IF NOT EXISTS `index_snapshot_usage_snapshot_id_usage_millis_package_name` "
+                    + "ON `snapshot_usage` (`snapshot_id`, `usage_millis`, `package_name`)",
+            "CREATE INDEX IF NOT EXISTS `index_snapshot_usage_snapshot_id_label_package_name` "
+                    + "ON `snapshot_usage` (`snapshot_id`, `label`, `package_name`)"
+    };
+
+    private File databaseFile;
+    private Connection connection;
+    private PreparedStatement getLimitForApp;
+    private PreparedStatement getAllLimits;
+    private PreparedStatement insertHourly;
+    private PreparedStatement addHourly;
+    private PreparedStatement insertDaily;
+    private PreparedStatement addDaily;
+    private PreparedStatement insertWeekly;
+    private PreparedStatement addWeekly;
+    private PreparedStatement dailyTotals;
+    private PreparedStatement weeklyTotals;
+    private PreparedStatement insertDailySnapshot;
+    private PreparedStatement deleteOtherSnapshots;
+    private PreparedStatement nameDescendingPage;
+
+    private String[] packages;
+    private long today;
+    private int next;
+    private long snapshotId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        databaseFile = File.createTempFile("usage-benchmark", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            // Same journal settings as the app's database
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            for (String sql : SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+
+        getLimitForApp = connection.prepareStatement("SELECT * FROM app_limits WHERE package_name = ?");
+        getAllLimits = connection.prepareStatement("SELECT * FROM app_limits");
+        insertHourly = connection.prepareStatement("INSERT OR IGNORE INTO `hourly_usage` "
+                + "(`package_name`,`hour_start`,`usage_millis`) VALUES (?,?,?)");
+        addHourly = connection.prepareStatement("UPDATE hourly_usage SET usage_millis = usage_millis + ? "
+                + "WHERE package_name = ? AND hour_start = ?");
+        insertDaily = connection.prepareStatement("INSERT OR IGNORE INTO `daily_usage` "
+                + "(`package_name`,`day_start`,`usage_millis`) VALUES (?,?,?)");
+        addDaily = connection.prepareStatement("UPDATE daily_usage SET usage_millis = usage_millis + ? "
+                + "WHERE package_name = ? AND day_start = ?");
+        insertWeekly = connection.prepareStatement("INSERT OR IGNORE INTO `weekly_usage` "
+                + "(`package_name`,`week_start`,`usage_millis`) VALUES (?,?,?)");
+        addWeekly = connection.prepareStatement("UPDATE weekly_usage SET usage_millis = usage_millis + ? "
+                + "WHERE package_name = ? AND week_start = ?");
+        dailyTotals = connection.prepareStatement("SELECT package_name, SUM(usage_millis) AS usage_millis "
+                + "FROM daily_usage WHERE day_start >= ? AND day_start < ? GROUP BY package_name");
+        weeklyTotals = connection.prepareStatement("SELECT package_name, SUM(usage_millis) AS usage_millis "
+                + "FROM weekly_usage WHERE week_start >= ? AND week_start < ? GROUP BY package_name");
+        insertDailySnapshot = connection.prepareStatement("INSERT INTO snapshot_usage "
+                + "(snapshot_id, package_name, label, usage_millis) "
+                + "SELECT ?, d.package_name, m.label, SUM(d.usage_millis) FROM daily_usage d "
+                + "JOIN package_metadata m ON m.package_name = d.package_name "
+                + "WHERE d.day_start >= ? AND d.day_start < ? "
+                + "GROUP BY d.package_name HAVING SUM(d.usage_millis) > 0");
+        deleteOtherSnapshots = connection.prepareStatement(
+                "DELETE FROM snapshot_usage WHERE snapshot_id NOT IN (?, ?)");
+        nameDescendingPage = connection.prepareStatement("SELECT s.package_name, s.label, s.usage_millis, "
+                + "l.time_limit_millis FROM snapshot_usage s "
+                + "LEFT JOIN app_limits l ON l.package_name = s.package_name WHERE s.snapshot_id = ? "
+                + "ORDER BY s.label DESC, s.package_name DESC LIMIT ? OFFSET ?");
+
+        packages = new String[PACKAGE_COUNT];
+        for (int i = 0; i < PACKAGE_COUNT; i++) {
+            packages[i] = "com.example.app" + i;
+        }
+        today = UsageBuckets.getDayStart(System.currentTimeMillis());
+        populate();
+        monthSnapshot();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+        databaseFile.delete();
+        new File(databaseFile.getPath() + "-wal").delete();
+        new File(databaseFile.getPath() + "-shm").delete();
+    }
+
+    /**
+     * {@code AppLimitDao.getLimitForApp}, run when a single limit changes.
+     */
+    @Benchmark
+    public long getLimitForApp() throws SQLException {
+        getLimitForApp.setString(1, nextPackage());
+        try (ResultSet rows = getLimitForApp.executeQuery()) {
+            return rows.next() ? rows.getLong(2) : -1;
+        }
+    }
+
+    /**
+     * {@code AppLimitDao.getAllLimits} into a map, as {@code LimitCache.load} does.
+     */
+    @Benchmark
+    public HashMap<String, Long> loadAllLimits() throws SQLException {
+        HashMap<String, Long> limits = new HashMap<>();
+        try (ResultSet rows = getAllLimits.executeQuery()) {
+            while (rows.next()) {
+                limits.put(rows.getString(1), rows.getLong(2));
+            }
+        }
+        return limits;
+    }
+
+    /**
+     * One history flush through {@code UsageHistoryDao.addAll}: a batch of hourly deltas plus
+     * their daily and weekly rollups in one transaction.
+     */
+    @Benchmark
+    public void flushHistory() throws SQLException {
+        long hourStart = today + TimeUnit.HOURS.toMillis(12);
+        long weekStart = UsageBuckets.getWeekStart(today);
+        connection.setAutoCommit(false);
+        try {
+            for (int i = 0; i < FLUSH_BATCH_SIZE; i++) {
+                String packageName = nextPackage();
+                add(insertHourly, addHourly, packageName, hourStart, 1000);
+                add(insertDaily, addDaily, packageName, today, 1000);
+                add(insertWeekly, addWeekly, packageName, weekStart, 1000);
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * {@code UsageHistoryDao.getDailyTotalsBetween} for the dashboard's month range.
+     */
+    @Benchmark
+    public HashMap<String, Long> monthTotals() throws SQLException {
+        return totals(dailyTotals, UsageBuckets.addDays(today, -29), UsageBuckets.addDays(today, 1));
+    }
+
+    /**
+     * {@code UsageHistoryDao.getWeeklyTotalsBetween} for the dashboard's quarter range.
+     */
+    @Benchmark
+    public HashMap<String, Long> quarterTotals() throws SQLException {
+        long weekStart = UsageBuckets.getWeekStart(today);
+        return totals(weeklyTotals, UsageBuckets.addDays(weekStart, -7 * 12), UsageBuckets.addDays(weekStart, 7));
+    }
+
+    /**
+     * {@code UsageSnapshotLoader.load} for the month range: the totals summed into a new
+     * snapshot, and the one before it deleted.
+     */
+    @Benchmark
+    public long monthSnapshot() throws SQLException {
+        long previous = snapshotId++;
+        insertDailySnapshot.setLong(1, snapshotId);
+        insertDailySnapshot.setLong(2, UsageBuckets.addDays(today, -29));
+        insertDailySnapshot.setLong(3, UsageBuckets.addDays(today, 1));
+        insertDailySnapshot.executeUpdate();
+        deleteOtherSnapshots.setLong(1, previous);
+        deleteOtherSnapshots.setLong(2, snapshotId);
+        deleteOtherSnapshots.executeUpdate();
+        return snapshotId;
+    }
+
+    /**
+     * {@code SnapshotDao.getPageByNameDescending} for the third page, as read when the list
+     * scrolls past the first two.
+     */
+    @Benchmark
+    public int nameDescendingPage() throws SQLException {
+        nameDescendingPage.setLong(1, snapshotId);
+        nameDescendingPage.setInt(2, PAGE_SIZE);
+        nameDescendingPage.setInt(3, 2 * PAGE_SIZE);
+        int rows = 0;
+        try (ResultSet page = nameDescendingPage.executeQuery()) {
+            while (page.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private void populate() throws SQLException {
+        Random random = new Random(42);
+        connection.setAutoCommit(false);
+        try (PreparedStatement insertLimit = connection.prepareStatement(
+                "INSERT OR REPLACE INTO `app_limits` (`package_name`,`time_limit_millis`) VALUES (?,?)")) {
+            try (PreparedStatement insertMetadata = connection.prepareStatement(
+                    "INSERT INTO `package_metadata` (`package_name`,`label`,`is_launcher`,`is_system`,"
+                            + "`version_code`) VALUES (?,?,0,0,1)")) {
+                for (int i = 0; i < PACKAGE_COUNT; i++) {
+                    insertMetadata.setString(1, packages[i]);
+                    // Mixed case, so the collation has something to fold
+                    insertMetadata.setString(2, ((i % 2 == 0) ? "app " : "App ") + random.nextInt(1000));
+                    insertMetadata.executeUpdate();
+                }
+            }
+            for (int i = 0; i < LIMIT_COUNT; i++) {
+                insertLimit.setString(1, packages[random.nextInt(PACKAGE_COUNT)]);
+                insertLimit.setLong(2, TimeUnit.MINUTES.toMillis(10 + random.nextInt(120)));
+                insertLimit.executeUpdate();
+            }
+            for (int day = HISTORY_DAYS - 1; day >= 0; day--) {
+                long dayStart = UsageBuckets.addDays(today, -day);
+                long weekStart = UsageBuckets.getWeekStart(dayStart);
+                for (int hour = 0; hour < ACTIVE_HOURS_PER_DAY; hour++) {
+                    long hourStart = dayStart + TimeUnit.HOURS.toMillis(9 + hour);
+                    for (int i = 0; i < PACKAGE_COUNT / 4; i++) {
+                        String packageName = packages[random.nextInt(PACKAGE_COUNT)];
+                        long millis = random.nextInt((int) TimeUnit.MINUTES.toMillis(20));
+                        add(insertHourly, addHourly, packageName, hourStart, millis);
+                        add(insertDaily, addDaily, packageName, dayStart, millis);
+                        add(insertWeekly, addWeekly, packageName, weekStart, millis);
+                    }
+                }
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    // Insert the bucket, or add to it when it already exists, like UsageHistoryDao.addAll
+    private static void add(PreparedStatement insert, PreparedStatement update,
+                            String packageName, long bucketStart, long millis) throws SQLException {
+        insert.setString(1, packageName);
+        insert.setLong(2, bucketStart);
+        insert.setLong(3, millis);
+        if (insert.executeUpdate() == 0) {
+            update.setLong(1, millis);
+            update.setString(2, packageName);
+            update.setLong(3, bucketStart);
+            update.executeUpdate();
+        }
+    }
+
+    private static HashMap<String, Long> totals(PreparedStatement query, long startTime, long endTime)
+            throws SQLException {
+        query.setLong(1, startTime);
+        query.setLong(2, endTime);
+        HashMap<String, Long> totals = new HashMap<>();
+        try (ResultSet rows = query.executeQuery()) {
+            while (rows.next()) {
+                totals.put(rows.getString(1), rows.getLong(2));
+            }
+        }
+        return totals;
+    }
+
+    private String nextPackage() {
+        next = (next + 7) % PACKAGE_COUNT;
+        return packages[next];
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.apptimetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the service does on every check and every foreground change: look up today's usage,
+ * resolve the app's limit and schedule the next check.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UsageEngineBenchmark {
+
+    @Param({"100", "5000"})
+    public int packageCount;
+
+    private String[] packages;
+    private long now;
+    private int next;
+    private long scheduledDelay;
+    private int alerts;
+
+    private DailyUsageAccumulator accumulator;
+    private MapLimitStore limitStore;
+    private UsageEngine engine;
+
+    // Per iteration, so switchApp's advancing clock never runs into the end of the day
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Random random = new Random(42);
+        packages = new String[packageCount];
+        Map<String, Long> totals = new HashMap<>();
+        limitStore = new MapLimitStore(TimeUnit.HOURS.toMillis(1));
+        for (int i = 0; i < packageCount; i++) {
+            packages[i] = "com.example.app" + i;
+            totals.put(packages[i], (long) random.nextInt((int) TimeUnit.HOURS.toMillis(2)));
+            // About one app in ten has its own limit, the rest use the default
+            if (random.nextInt(10) == 0) {
+                limitStore.limits.put(packages[i], TimeUnit.MINUTES.toMillis(10 + random.nextInt(120)));
+            }
+        }
+
+        // Early in a local day, so the engine's day window has almost a whole day left
+        now = UsageBuckets.getDayStart(TimeUnit.DAYS.toMillis(1)) + TimeUnit.HOURS.toMillis(1);
+
+        accumulator = new DailyUsageAccumulator();
+        accumulator.seed(totals, now);
+        accumulator.onForegroundChanged(packages[0], now);
+
+        UsageEventSource noEvents = new UsageEventSource() {
+            @Override
+            public void poll(long now, Listener listener) {}
+
+            @Override
+            public void clearForeground() {}
+        };
+        CheckScheduler checkScheduler = new CheckScheduler() {
+            @Override
+            public void schedule(long delayMillis) {
+                scheduledDelay = delayMillis;
+            }
+
+            @Override
+            public void cancel() {}
+        };
+        engine = new UsageEngine(noEvents, () -> now, limitStore,
+                (packageName, usageMillis, limitMillis) -> alerts++,
+                checkScheduler, packageName -> false, dayStart -> {});
+        engine.seed(totals, engine.getDayStart());
+        engine.onForegroundAppChanged(packages[0], now);
+    }
+
+    @Benchmark
+    public long usageLookup() {
+        return accumulator.getUsage(nextPackage(), now);
+    }
+
+    @Benchmark
+    public long limitLookup() {
+        return limitStore.getLimit(nextPackage());
+    }
+
+    /**
+     * A scheduled check of the app that is already in the foreground.
+     */
+    @Benchmark
+    public long check() {
+        engine.check();
+        return scheduledDelay;
+    }
+
+    /**
+     * A foreground change, which closes the previous app's interval and checks the new app.
+     */
+    @Benchmark
+    public long switchApp() {
+        now++;
+        engine.onForegroundAppChanged(nextPackage(), now);
+        return scheduledDelay + alerts;
+    }
+
+    private String nextPackage() {
+        next = (next + 7) % packageCount;
+        return packages[next];
+    }
+
+    // Same lookup as LimitCache, which needs a Context and so is not compiled here
+    private static class MapLimitStore implements LimitStore {
+        final ConcurrentHashMap<String, Long> limits = new ConcurrentHashMap<>();
+        final long defaultLimit;
+
+        MapLimitStore(long defaultLimit) {
+            this.defaultLimit = defaultLimit;
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return true;
+        }
+
+        @Override
+        public long getLimit(String packageName) {
+            Long limit = limits.get(packageName);
+            return (limit != null) ? limit : defaultLimit;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.apptimetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The duration formatting of the limit alert ({@code TrackingService}) and of every row of
+ * the dashboard list ({@code UsageSnapshotLoader}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UsageTimeFormatBenchmark {
+    private static final int DURATION_COUNT = 1024;
+
+    private final long[] durations = new long[DURATION_COUNT];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        // A mix of seconds, minutes and hours, like a day's usage list
+        Random random = new Random(42);
+        for (int i = 0; i < DURATION_COUNT; i++) {
+            durations[i] = (long) (random.nextDouble() * random.nextDouble() * TimeUnit.HOURS.toMillis(5));
+        }
+    }
+
+    @Benchmark
+    public String hoursMinutes() {
+        return UsageTimeFormat.hoursMinutes(nextDuration());
+    }
+
+    @Benchmark
+    public String withSeconds() {
+        return UsageTimeFormat.withSeconds(nextDuration());
+    }
+
+    private long nextDuration() {
+        next = (next + 1) & (DURATION_COUNT - 1);
+        return durations[next];
+    }
+}
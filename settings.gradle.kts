@@ -22,3 +22,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "AppTimeTracker"
 include(":app")
+include(":benchmark")